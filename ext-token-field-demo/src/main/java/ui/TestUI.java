@@ -19,6 +19,7 @@
 package ui;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -31,7 +32,9 @@ import com.explicatis.ext_token_field.ExtTokenField;
 import com.explicatis.ext_token_field.SimpleTokenizable;
 import com.explicatis.ext_token_field.Tokenizable;
 import com.explicatis.ext_token_field.TokenizableAction;
+import com.explicatis.ext_token_field.TokenizableResolver;
 import com.explicatis.ext_token_field.events.TokenAddedEvent;
+import com.explicatis.ext_token_field.suggestions.TokenizableSuggestionProvider;
 import com.vaadin.annotations.Theme;
 import com.vaadin.annotations.Widgetset;
 import com.vaadin.data.Binder;
@@ -92,7 +95,7 @@ public class TestUI extends UI
 		notes.setSpacing(false);
 
 		addNote("Keyboard controls (arrow-left, arrow-right & delete)");
-		addNote("ComboBox or Button input (TextField support is planned)");
+		addNote("ComboBox, Button or TextField input, into which comma separated values can be pasted");
 		addNote("Custom actions can be defined, if the setInheritsReadOnlyAndEnabled setting is false, they will be still be usable, when the ExtTokenField is set to read only or is not enabled");
 		addNote("trims long token captions so that token is clickable to expose full caption (planned to be configurable, as to trimming length)");
 		addNote("implement <b>Tokenizable</b> interface in your bean or entity class to be able to set the fields value as a List of these objects");
@@ -130,7 +133,7 @@ public class TestUI extends UI
 
 	private static ComboBox<SimpleTokenizable> buildComboBox()
 	{
-		ComboBox<SimpleTokenizable> result = new ComboBox<>("", initTokenCollection());
+		ComboBox<SimpleTokenizable> result = new ComboBox<>("");
 		result.setItemCaptionGenerator(SimpleTokenizable::getStringValue);
 		result.setPlaceholder("Type here to add");
 		return result;
@@ -209,6 +212,7 @@ public class TestUI extends UI
 		private ExtTokenField				tokenField						= new ExtTokenField();
 		private CheckBox					delete							= new CheckBox("activate or deactivate delete action", true);
 		private CheckBox					comboBoxOrButton				= new CheckBox("ComboBox or Button");
+		private CheckBox					pasteInput						= new CheckBox("paste comma separated languages into a TextField");
 		private CheckBox					readOnly						= new CheckBox("read only");
 		private CheckBox					required						= new CheckBox("required", true);
 		private CheckBox					enabled							= new CheckBox("enabled", true);
@@ -217,7 +221,9 @@ public class TestUI extends UI
 		private CheckBox					activateTokenListeners			= new CheckBox("add or remove TokenAddedListener & TokenRemovedListener & TokenReorderedListener");
 		private CheckBox					activateValueChangeListener		= new CheckBox("add or remove ValueChangeListener");
 		private CheckBox					enableDragDrop					= new CheckBox("enable drag and drop reordering");
+		private CheckBox					enableVirtualRendering			= new CheckBox("render visible tokens only (fixed height)");
 
+		private List<SimpleTokenizable>		languages						= new ArrayList<>(initTokenCollection());
 		private ComboBox<SimpleTokenizable>	comboBox						= TestUI.buildComboBox();
 		private Button						addButton						= buildAddButton();
 		private Binder<DemoBean>			binder							= new Binder<>(DemoBean.class);
@@ -236,7 +242,8 @@ public class TestUI extends UI
 
 			setMargin(new MarginInfo(false, true));
 			addComponent(formLayout);
-			FormLayout configLayout = new FormLayout(readOnly, enabled, required, delete, comboBoxOrButton, addCustomAction, readOnlyIgnoringCustomAction, activateValueChangeListener, activateTokenListeners, enableDragDrop);
+			FormLayout configLayout = new FormLayout(readOnly, enabled, required, delete, comboBoxOrButton, pasteInput, addCustomAction, readOnlyIgnoringCustomAction, activateValueChangeListener, activateTokenListeners, enableDragDrop,
+					enableVirtualRendering);
 			configLayout.setCaption("modify settings");
 			configLayout.setSizeFull();
 			addComponent(configLayout);
@@ -265,6 +272,25 @@ public class TestUI extends UI
 			tokenField.setCaption("Tokens");
 			tokenField.setInputField(comboBox);
 			tokenField.setEnableDefaultDeleteTokenAction(delete.getValue());
+
+			TokenizableSuggestionProvider<SimpleTokenizable> suggestions = new TokenizableSuggestionProvider<>(languages);
+			suggestions.setTokenField(tokenField);
+			comboBox.setDataProvider(suggestions);
+
+			tokenField.addTokenizablesPastedListener(event -> {
+				if (!event.getUnresolvedValues().isEmpty())
+				{
+					notificate("unknown languages: " + String.join(", ", event.getUnresolvedValues()));
+				}
+			});
+		}
+
+		private SimpleTokenizable findLanguage(String name)
+		{
+			return languages.stream()//
+					.filter(language -> language.getStringValue().equalsIgnoreCase(name))//
+					.findFirst()//
+					.orElse(null);
 		}
 
 		private void setSampleTokenizableValue()
@@ -305,6 +331,13 @@ public class TestUI extends UI
 					tokenField.setInputField(comboBox);
 			});
 
+			pasteInput.addValueChangeListener(event -> {
+				if (pasteInput.getValue())
+					tokenField.setPasteInput(TokenizableResolver.of(this::findLanguage));
+				else
+					tokenField.setInputField(comboBox);
+			});
+
 			TokenizableAction tokenizableAction = new TokenizableAction("id1", VaadinIcons.VAADIN_V)
 			{
 
@@ -361,6 +394,14 @@ public class TestUI extends UI
 			required.addValueChangeListener(e -> tokenField.setRequiredIndicatorVisible(required.getValue()));
 
 			enableDragDrop.addValueChangeListener(e -> tokenField.setTokenDragDropEnabled(enableDragDrop.getValue()));
+
+			enableVirtualRendering.addValueChangeListener(e -> {
+				if (enableVirtualRendering.getValue())
+					tokenField.setHeight(120, Unit.PIXELS);
+				else
+					tokenField.setHeightUndefined();
+				tokenField.setVirtualRenderingEnabled(enableVirtualRendering.getValue());
+			});
 		}
 
 		private Button initFocusTestButton()
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.jmh;
+
+import com.explicatis.ext_token_field.ExtTokenField;
+import com.explicatis.ext_token_field.Tokenizable;
+import com.explicatis.ext_token_field.shared.DropTargetType;
+import com.explicatis.ext_token_field.shared.ExtTokenFieldState;
+import com.explicatis.ext_token_field.shared.Token;
+
+/**
+ * Exposes the protected hooks of {@link ExtTokenField}, which are called by the client, to the benchmarks.
+ */
+public class BenchmarkTokenField extends ExtTokenField
+{
+
+	public void dropToken(Tokenizable source, Tokenizable target, DropTargetType type)
+	{
+		handleDroppedToken(source.getIdentifier(), target.getIdentifier(), type);
+	}
+
+	public Token toToken(Tokenizable tokenizable)
+	{
+		return convertTokenizableToToken(tokenizable);
+	}
+
+	public ExtTokenFieldState getSharedState()
+	{
+		return getState(false);
+	}
+
+	/**
+	 * sends the pending changes like at the end of a request and drops them
+	 */
+	public void respond()
+	{
+		beforeClientResponse(false);
+		retrievePendingRpcCalls();
+	}
+}
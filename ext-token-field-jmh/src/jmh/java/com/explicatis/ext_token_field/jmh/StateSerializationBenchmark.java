@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.explicatis.ext_token_field.Tokenizable;
+import com.explicatis.ext_token_field.shared.ExtTokenFieldState;
+import com.explicatis.ext_token_field.shared.Token;
+import com.explicatis.ext_token_field.shared.TokenColumns;
+import com.vaadin.server.JsonCodec;
+
+import elemental.json.JsonArray;
+import elemental.json.JsonValue;
+
+/**
+ * Cost and size of what is serialized per field: the shared state, the token snapshot sent to the client, also in
+ * the compact column encoding, and the component in the serialized session. The sizes in bytes are reported as
+ * secondary results.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StateSerializationBenchmark
+{
+
+	private static final Type	TOKEN_LIST_TYPE	= new ArrayList<Token>()
+												{
+												}.getClass().getGenericSuperclass();
+
+	@State(Scope.Thread)
+	public static class Fixture
+	{
+
+		@Param({"10", "1000", "10000", "100000"})
+		public int					tokenCount;
+
+		public BenchmarkTokenField	field;
+		public List<Token>			tokens;
+
+		@Setup(Level.Trial)
+		public void setUp()
+		{
+			field = new BenchmarkTokenField();
+			field.setValue(TokenFieldFixture.createTokenizables(0, tokenCount));
+			field.respond();
+
+			tokens = new ArrayList<>(tokenCount);
+			for (Tokenizable tokenizable : field.getValue())
+			{
+				tokens.add(field.toToken(tokenizable));
+			}
+		}
+	}
+
+	/**
+	 * serialized size of the last invocation
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Size
+	{
+
+		public long	bytes;
+	}
+
+	@Benchmark
+	public JsonValue encodeState(Fixture fixture, Size size)
+	{
+		JsonValue encoded = JsonCodec.encode(fixture.field.getSharedState(), null, ExtTokenFieldState.class, null).getEncodedValue();
+		size.bytes = encoded.toJson().length();
+		return encoded;
+	}
+
+	@Benchmark
+	public JsonValue encodeTokenSnapshot(Fixture fixture, Size size)
+	{
+		JsonValue encoded = JsonCodec.encode(fixture.tokens, null, TOKEN_LIST_TYPE, null).getEncodedValue();
+		size.bytes = encoded.toJson().length();
+		return encoded;
+	}
+
+	@Benchmark
+	public JsonValue encodeTokenColumns(Fixture fixture, Size size)
+	{
+		JsonValue encoded = JsonCodec.encode(TokenColumns.encode(fixture.tokens), null, JsonArray.class, null).getEncodedValue();
+		size.bytes = encoded.toJson().length();
+		return encoded;
+	}
+
+	@Benchmark
+	public byte[] serializeField(Fixture fixture, Size size) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(fixture.field);
+		}
+		size.bytes = bytes.size();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.explicatis.ext_token_field.SimpleTokenizable;
+import com.explicatis.ext_token_field.suggestions.CachingSuggestionIndex;
+import com.explicatis.ext_token_field.suggestions.MappedSuggestionIndex;
+import com.explicatis.ext_token_field.suggestions.PrefixSuggestionIndex;
+import com.explicatis.ext_token_field.suggestions.TokenizableSuggestionProvider;
+import com.explicatis.ext_token_field.suggestions.TrigramSuggestionIndex;
+
+/**
+ * Latency of one suggestion query of the input combo box, sampled so the percentiles are reported. The catalog
+ * consists of random tag names of one to three words. The contains scan is the default in memory filter of the combo
+ * box and the baseline of the indexes. The trigram index is queried with misspelled filters.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SuggestionBenchmark
+{
+
+	private static final String[]	SYLLABLES	= {"ka", "to", "mi", "ra", "ne", "su", "lo", "pe", "vi", "da", "x", "qu"};
+	private static final int		LIMIT		= TokenizableSuggestionProvider.DEFAULT_MAX_SUGGESTIONS;
+
+	@State(Scope.Benchmark)
+	public static class Catalog
+	{
+
+		@Param({"10000", "200000"})
+		public int											catalogSize;
+
+		public List<SimpleTokenizable>						tokenizables;
+		public PrefixSuggestionIndex<SimpleTokenizable>		prefixIndex;
+		public TrigramSuggestionIndex<SimpleTokenizable>	trigramIndex;
+		public CachingSuggestionIndex<SimpleTokenizable>	cachedTrigramIndex;
+		public MappedSuggestionIndex						mappedIndex;
+		public Path											mappedFile;
+		public String[]										filters;
+		public String[]										misspelledFilters;
+		private int											next;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException
+		{
+			Random random = new Random(42);
+			tokenizables = new ArrayList<>(catalogSize);
+			for (int i = 0; i < catalogSize; i++)
+			{
+				tokenizables.add(new SimpleTokenizable(i, randomTag(random)));
+			}
+			prefixIndex = new PrefixSuggestionIndex<>(tokenizables);
+			trigramIndex = new TrigramSuggestionIndex<>(tokenizables);
+			cachedTrigramIndex = new CachingSuggestionIndex<>(trigramIndex, 1000, Duration.ofMinutes(10));
+			mappedFile = Files.createTempFile("suggestions", ".catalog");
+			MappedSuggestionIndex.write(mappedFile, tokenizables);
+			mappedIndex = new MappedSuggestionIndex(mappedFile);
+
+			filters = new String[256];
+			misspelledFilters = new String[filters.length];
+			for (int i = 0; i < filters.length; i++)
+			{
+				String tag = tokenizables.get(random.nextInt(catalogSize)).getStringValue();
+				filters[i] = tag.substring(0, 1 + random.nextInt(Math.min(tag.length(), 6)));
+
+				String prefix = tag.substring(0, Math.min(tag.length(), 4 + random.nextInt(6)));
+				int typo = random.nextInt(prefix.length());
+				misspelledFilters[i] = prefix.substring(0, typo) + 'z' + prefix.substring(typo + 1);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException
+		{
+			Files.deleteIfExists(mappedFile);
+		}
+
+		public String nextFilter()
+		{
+			next = (next + 1) & (filters.length - 1);
+			return filters[next];
+		}
+
+		public String nextMisspelledFilter()
+		{
+			next = (next + 1) & (filters.length - 1);
+			return misspelledFilters[next];
+		}
+
+		private static String randomTag(Random random)
+		{
+			StringBuilder result = new StringBuilder();
+			int words = 1 + random.nextInt(3);
+			for (int i = 0; i < words; i++)
+			{
+				if (i > 0)
+				{
+					result.append(' ');
+				}
+				int syllables = 1 + random.nextInt(4);
+				for (int j = 0; j < syllables; j++)
+				{
+					result.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+				}
+			}
+			return result.toString();
+		}
+	}
+
+	@Benchmark
+	public List<SimpleTokenizable> prefixIndex(Catalog catalog)
+	{
+		return catalog.prefixIndex.suggest(catalog.nextFilter(), LIMIT);
+	}
+
+	/**
+	 * the same filters as the prefix index, read from the mapped file
+	 */
+	@Benchmark
+	public List<SimpleTokenizable> mappedIndex(Catalog catalog)
+	{
+		return catalog.mappedIndex.suggest(catalog.nextFilter(), LIMIT);
+	}
+
+	/**
+	 * a filter of four to nine chars with one char replaced
+	 */
+	@Benchmark
+	public List<SimpleTokenizable> trigramIndex(Catalog catalog)
+	{
+		return catalog.trigramIndex.suggest(catalog.nextMisspelledFilter(), LIMIT);
+	}
+
+	/**
+	 * the same filters as the trigram index, all but the first queries are cache hits
+	 */
+	@Benchmark
+	public List<SimpleTokenizable> cachedTrigramIndex(Catalog catalog)
+	{
+		return catalog.cachedTrigramIndex.suggest(catalog.nextMisspelledFilter(), LIMIT, identifier -> identifier % 10 == 0);
+	}
+
+	/**
+	 * replaces the value of one catalog entry and restores it
+	 */
+	@Benchmark
+	public TrigramSuggestionIndex<SimpleTokenizable> trigramIndexUpdate(Catalog catalog)
+	{
+		SimpleTokenizable tokenizable = catalog.tokenizables.get(catalog.next);
+		catalog.trigramIndex.add(new SimpleTokenizable(tokenizable.getIdentifier(), catalog.nextMisspelledFilter()));
+		catalog.trigramIndex.add(tokenizable);
+		return catalog.trigramIndex;
+	}
+
+	/**
+	 * the combo box needs the number of all matches and the first page of them
+	 */
+	@Benchmark
+	public List<SimpleTokenizable> containsScan(Catalog catalog)
+	{
+		String filter = catalog.nextFilter().toLowerCase(Locale.ROOT);
+		List<SimpleTokenizable> matches = catalog.tokenizables.stream()//
+				.filter(tokenizable -> tokenizable.getStringValue().toLowerCase(Locale.ROOT).contains(filter))//
+				.collect(Collectors.toList());
+		return matches.subList(0, Math.min(LIMIT, matches.size()));
+	}
+}
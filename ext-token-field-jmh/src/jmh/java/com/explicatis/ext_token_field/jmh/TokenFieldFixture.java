@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.explicatis.ext_token_field.SimpleTokenizable;
+import com.explicatis.ext_token_field.Tokenizable;
+
+/**
+ * A field filled with tokenCount tokens and listenerCount listeners of every kind.
+ */
+@State(Scope.Thread)
+public class TokenFieldFixture
+{
+
+	@Param({"10", "1000", "10000", "100000"})
+	public int					tokenCount;
+
+	@Param({"0", "1", "10"})
+	public int					listenerCount;
+
+	public BenchmarkTokenField	field;
+	public List<Tokenizable>	tokenizables;
+	public List<Tokenizable>	reversedTokenizables;
+	public long					nextIdentifier;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		field = new BenchmarkTokenField();
+		for (int i = 0; i < listenerCount; i++)
+		{
+			field.addValueChangeListener(event -> {
+			});
+			field.addTokenAddedListener(event -> {
+			});
+			field.addTokenRemovedListener(event -> {
+			});
+			field.addTokenReorderedListener(event -> {
+			});
+		}
+
+		tokenizables = createTokenizables(0, tokenCount);
+		reversedTokenizables = new ArrayList<>(tokenizables.size());
+		for (int i = tokenizables.size() - 1; i >= 0; i--)
+		{
+			reversedTokenizables.add(tokenizables.get(i));
+		}
+		nextIdentifier = tokenCount;
+
+		field.setValue(tokenizables);
+		field.respond();
+	}
+
+	public Tokenizable nextTokenizable()
+	{
+		long identifier = nextIdentifier++;
+		return new SimpleTokenizable(identifier, "token " + identifier);
+	}
+
+	public static List<Tokenizable> createTokenizables(long firstIdentifier, int count)
+	{
+		List<Tokenizable> result = new ArrayList<>(count);
+		for (long i = firstIdentifier; i < firstIdentifier + count; i++)
+		{
+			result.add(new SimpleTokenizable(i, "token " + i));
+		}
+		return result;
+	}
+}
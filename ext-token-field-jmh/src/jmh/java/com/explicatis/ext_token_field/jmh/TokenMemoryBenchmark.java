@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jol.info.GraphLayout;
+
+import com.explicatis.ext_token_field.Tokenizable;
+
+/**
+ * Memory of the server side token model. Filling a field is measured with its allocation, the retained bytes per
+ * token, excluding the tokenizables themselves, are reported as secondary result.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TokenMemoryBenchmark
+{
+
+	@State(Scope.Benchmark)
+	public static class Fixture
+	{
+
+		@Param({"10", "1000", "10000", "100000"})
+		public int					tokenCount;
+
+		public List<Tokenizable>	tokenizables;
+		public long					retainedBytesPerToken;
+
+		@Setup(Level.Trial)
+		public void setUp()
+		{
+			tokenizables = TokenFieldFixture.createTokenizables(0, tokenCount);
+
+			BenchmarkTokenField emptyField = new BenchmarkTokenField();
+			emptyField.respond();
+			BenchmarkTokenField field = fill(tokenizables);
+
+			long modelBytes = GraphLayout.parseInstance(field).subtract(GraphLayout.parseInstance(tokenizables.toArray())).totalSize();
+			retainedBytesPerToken = (modelBytes - GraphLayout.parseInstance(emptyField).totalSize()) / tokenCount;
+		}
+	}
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Footprint
+	{
+
+		public long	retainedBytesPerToken;
+	}
+
+	@Benchmark
+	public BenchmarkTokenField fill(Fixture fixture, Footprint footprint)
+	{
+		footprint.retainedBytesPerToken = fixture.retainedBytesPerToken;
+		return fill(fixture.tokenizables);
+	}
+
+	private static BenchmarkTokenField fill(List<Tokenizable> tokenizables)
+	{
+		BenchmarkTokenField field = new BenchmarkTokenField();
+		field.addTokenizables(tokenizables);
+		field.respond();
+		return field;
+	}
+}
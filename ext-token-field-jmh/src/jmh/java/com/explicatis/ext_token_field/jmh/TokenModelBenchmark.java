@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import com.explicatis.ext_token_field.Tokenizable;
+import com.explicatis.ext_token_field.shared.DropTargetType;
+
+/**
+ * Throughput of the hot paths of the server side token model. Every mutation is followed by the client response, so
+ * the delta or snapshot sent to the client is part of the measurement. Mutations are paired with their inverse, so
+ * the field keeps its size over the whole run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TokenModelBenchmark
+{
+
+	/**
+	 * appends a new token and removes it again
+	 */
+	@Benchmark
+	public BenchmarkTokenField addTokenizable(TokenFieldFixture fixture)
+	{
+		Tokenizable tokenizable = fixture.nextTokenizable();
+		fixture.field.addTokenizable(tokenizable);
+		fixture.field.respond();
+		fixture.field.removeTokenizable(tokenizable);
+		fixture.field.respond();
+		return fixture.field;
+	}
+
+	/**
+	 * removes the first token and appends it again, so the next invocation removes the following one
+	 */
+	@Benchmark
+	public BenchmarkTokenField removeTokenizable(TokenFieldFixture fixture)
+	{
+		Tokenizable first = fixture.field.getValue().get(0);
+		fixture.field.removeTokenizable(first);
+		fixture.field.respond();
+		fixture.field.addTokenizable(first);
+		fixture.field.respond();
+		return fixture.field;
+	}
+
+	/**
+	 * drops the first token behind the last one
+	 */
+	@Benchmark
+	public BenchmarkTokenField handleDroppedToken(TokenFieldFixture fixture)
+	{
+		List<Tokenizable> value = fixture.field.getValue();
+		fixture.field.dropToken(value.get(0), value.get(value.size() - 1), DropTargetType.AFTER);
+		fixture.field.respond();
+		return fixture.field;
+	}
+
+	/**
+	 * replaces the value by the tokens in reversed order and back
+	 */
+	@Benchmark
+	public BenchmarkTokenField doSetValue(TokenFieldFixture fixture)
+	{
+		fixture.field.setValue(fixture.reversedTokenizables);
+		fixture.field.respond();
+		fixture.field.setValue(fixture.tokenizables);
+		fixture.field.respond();
+		return fixture.field;
+	}
+
+	@Benchmark
+	public List<Tokenizable> getValue(TokenFieldFixture fixture)
+	{
+		return fixture.field.getValue();
+	}
+}
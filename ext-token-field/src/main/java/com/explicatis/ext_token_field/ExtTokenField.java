@@ -20,15 +20,21 @@ package com.explicatis.ext_token_field;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import com.explicatis.ext_token_field.events.TokenAddedEvent;
@@ -37,11 +43,20 @@ import com.explicatis.ext_token_field.events.TokenRemovedEvent;
 import com.explicatis.ext_token_field.events.TokenRemovedListener;
 import com.explicatis.ext_token_field.events.TokenReorderedEvent;
 import com.explicatis.ext_token_field.events.TokenReorderedListener;
+import com.explicatis.ext_token_field.events.TokenizablesPastedEvent;
+import com.explicatis.ext_token_field.events.TokenizablesPastedListener;
+import com.explicatis.ext_token_field.events.TokensChangedEvent;
+import com.explicatis.ext_token_field.events.TokensChangedListener;
 import com.explicatis.ext_token_field.shared.DropTargetType;
+import com.explicatis.ext_token_field.shared.ExtTokenFieldClientRpc;
 import com.explicatis.ext_token_field.shared.ExtTokenFieldServerRpc;
 import com.explicatis.ext_token_field.shared.ExtTokenFieldState;
 import com.explicatis.ext_token_field.shared.Token;
 import com.explicatis.ext_token_field.shared.TokenAction;
+import com.explicatis.ext_token_field.shared.TokenColumns;
+import com.explicatis.ext_token_field.shared.TokenInteraction;
+import com.explicatis.ext_token_field.shared.TokenOperation;
+import com.vaadin.data.provider.DataProvider;
 import com.vaadin.icons.VaadinIcons;
 import com.vaadin.shared.Registration;
 import com.vaadin.ui.AbstractField;
@@ -50,48 +65,586 @@ import com.vaadin.ui.Button;
 import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.HasComponents;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 
 public class ExtTokenField extends AbstractField<List<Tokenizable>> implements HasComponents
 {
 
+	private static final Logger				LOGGER							= Logger.getLogger(ExtTokenField.class.getName());
+
 	private ExtTokenFieldServerRpc			serverRpc						= new ExtTokenFieldServerRpc()
 																			{
 
 																				@Override
-																				public void tokenActionClicked(Token token, TokenAction tokenAction)
+																				public void applyTokenInteractions(List<TokenInteraction> interactions)
 																				{
-																					if (identifierToTokenizableAction.containsKey(tokenAction.identifier))
-																					{
-																						Tokenizable tokenizable = identifierToTokenizable.get(token.id);
-																						identifierToTokenizableAction.get(tokenAction.identifier).onClick(tokenizable);
-																					}
+																					handleTokenInteractions(interactions);
 																				}
 
 																				@Override
-																				public void tokenDroped(Token sourceToken, Token targetToken, DropTargetType type)
+																				public void resyncTokens()
 																				{
-																					handleDroppedToken(sourceToken, targetToken, type);
+																					isTokenSnapshotRequired = true;
+																					markAsDirty();
+																				}
+
+																				@Override
+																				public void requestTokens(int offset, int limit)
+																				{
+																					sendTokenPage(offset, limit);
+																				}
+
+																				@Override
+																				public void resolvePastedValues(int pasteId, List<String> values, boolean last)
+																				{
+																					handlePastedValues(pasteId, values, last);
 																				}
 																			};
 
-	private Map<Long, Tokenizable>			identifierToTokenizable			= new HashMap<>();
+	private TokenStore						tokenStore						= new TokenStore();
 	private Map<String, TokenizableAction>	identifierToTokenizableAction	= new HashMap<>();
 	private List<Tokenizable>				value;
+	private boolean							isInternalValueChange			= false;
+	private List<TokenOperation>			pendingTokenOperations			= new ArrayList<>();
+	private boolean							isTokenSnapshotRequired			= false;
+	private int								tokenVersion					= 0;
+	private LazyTokenSource<?, ?>			lazyTokenSource;
+	private Registration					dataProviderListenerRegistration;
+	private int								lazyWindowSize					= 1000;
+	private boolean							compactTokenEncodingEnabled		= false;
+	private int								transactionDepth				= 0;
+	private boolean							isValueChangePending			= false;
+	private List<Tokenizable>				suggestionCatalog;
+	private LongObjectMap<Tokenizable>		suggestionCatalogById;
+	private int								suggestionCatalogVersion		= 0;
+	private boolean							isSuggestionCatalogSent			= false;
+	private TokenizableResolver				pasteResolver;
+	private int								pasteId							= -1;
+	private List<Tokenizable>				pastedTokenizables				= new ArrayList<>();
+	private List<String>					unresolvedPastedValues			= new ArrayList<>();
+	private int								pastedValueCount				= 0;
 
 	public ExtTokenField()
 	{
 		registerRpc(serverRpc);
 		addAttachListener(event -> {
-			if (!hasInputButton() && !hasInputField())
+			if (!hasInputButton() && !hasInputField() && !hasClientSideSuggestions() && !hasPasteInput())
 				throw new RuntimeException("no input field nor input button set");
 		});
 	}
 
 	public void setTokenDragDropEnabled(boolean value)
 	{
+		if (value)
+		{
+			checkNotLazy();
+		}
 		getState().tokenDragAndDropEnabled = value;
 	}
 
+	/**
+	 * Switches the field to lazy mode. The value is backed by the given data provider and its order, only the
+	 * tokenizables of recently shown pages are kept in memory. The client fetches pages of tokens while scrolling, so
+	 * virtual rendering is enabled and the field needs a fixed height.
+	 *
+	 * In lazy mode tokens cannot be added, removed or reordered by the field. Token actions should change the backend
+	 * and refresh the data provider instead. Passing null switches back to the regular mode with an empty value.
+	 */
+	public <T extends Tokenizable> void setDataProvider(DataProvider<T, ?> dataProvider)
+	{
+		removeDataProviderListener();
+		tokenStore.clear();
+
+		if (dataProvider != null)
+		{
+			lazyTokenSource = new LazyTokenSource<>(dataProvider, lazyWindowSize);
+			getState().tokenDragAndDropEnabled = false;
+			setVirtualRenderingEnabled(true);
+			if (isAttached())
+			{
+				addDataProviderListener();
+			}
+			lazyValueChanged();
+		}
+		else
+		{
+			lazyTokenSource = null;
+			setValue(getEmptyValue());
+			requireTokenSnapshot();
+		}
+	}
+
+	public DataProvider<?, ?> getDataProvider()
+	{
+		return lazyTokenSource != null ? lazyTokenSource.getDataProvider() : null;
+	}
+
+	public boolean isLazy()
+	{
+		return lazyTokenSource != null;
+	}
+
+	/**
+	 * Sets the count of tokenizables kept in memory in lazy mode, it takes effect with the next data provider.
+	 */
+	public void setLazyWindowSize(int lazyWindowSize)
+	{
+		this.lazyWindowSize = lazyWindowSize;
+	}
+
+	private void lazyValueChanged()
+	{
+		lazyTokenSource.reset();
+
+		List<Tokenizable> oldValue = getValue();
+		this.value = new LazyTokenizableList(lazyTokenSource);
+		requireTokenSnapshot();
+		fireEvent(createValueChange(oldValue, false));
+	}
+
+	private void sendTokenPage(int offset, int limit)
+	{
+		if (lazyTokenSource == null)
+		{
+			return;
+		}
+
+		List<Token> page = new ArrayList<>();
+		for (Tokenizable tokenizable : lazyTokenSource.fetch(offset, limit))
+		{
+			page.add(convertTokenizableToToken(tokenizable));
+		}
+		getRpcProxy(ExtTokenFieldClientRpc.class).setTokenPage(tokenVersion, offset, page);
+	}
+
+	private void addDataProviderListener()
+	{
+		if (lazyTokenSource != null && dataProviderListenerRegistration == null)
+		{
+			dataProviderListenerRegistration = lazyTokenSource.getDataProvider().addDataProviderListener(event -> lazyValueChanged());
+		}
+	}
+
+	private void removeDataProviderListener()
+	{
+		if (dataProviderListenerRegistration != null)
+		{
+			dataProviderListenerRegistration.remove();
+			dataProviderListenerRegistration = null;
+		}
+	}
+
+	@Override
+	public void attach()
+	{
+		super.attach();
+		addDataProviderListener();
+	}
+
+	@Override
+	public void detach()
+	{
+		removeDataProviderListener();
+		super.detach();
+	}
+
+	private void checkNotLazy()
+	{
+		if (lazyTokenSource != null)
+		{
+			throw new IllegalStateException("tokens cannot be changed by the field, while a data provider is set");
+		}
+	}
+
+	/**
+	 * @return the tokenizable with the given identifier or null, if there is none
+	 */
+	protected Tokenizable findTokenizableById(long identifier)
+	{
+		return lazyTokenSource != null ? lazyTokenSource.getTokenizable(identifier) : tokenStore.getTokenizable(identifier);
+	}
+
+	/**
+	 * Checks in O(1) and without copying the value, whether a tokenizable with the given identifier is selected. In
+	 * lazy mode only the already fetched tokenizables are known.
+	 */
+	public boolean containsIdentifier(long identifier)
+	{
+		return lazyTokenSource != null ? lazyTokenSource.contains(identifier) : tokenStore.contains(identifier);
+	}
+
+	/**
+	 * If enabled, only the tokens in the visible part of the field are rendered by the client. The field scrolls
+	 * vertically, so it needs a fixed height.
+	 */
+	public void setVirtualRenderingEnabled(boolean value)
+	{
+		getState().virtualRenderingEnabled = value;
+	}
+
+	public boolean isVirtualRenderingEnabled()
+	{
+		return getState(false).virtualRenderingEnabled;
+	}
+
+	/**
+	 * If enabled, all tokens are sent to the client as parallel columns of ids and values instead of a list of token
+	 * objects, repeated values only once. This makes the payload of large fields considerably smaller and the client
+	 * creates its tokens only when they are rendered.
+	 */
+	public void setCompactTokenEncodingEnabled(boolean value)
+	{
+		if (compactTokenEncodingEnabled != value)
+		{
+			compactTokenEncodingEnabled = value;
+			requireTokenSnapshot();
+		}
+	}
+
+	public boolean isCompactTokenEncodingEnabled()
+	{
+		return compactTokenEncodingEnabled;
+	}
+
+	/**
+	 * If enabled, the client deletes and reorders tokens right away, before the server has answered. If the server
+	 * does not apply the change, e.g. because a listener vetoed it, the client is reset to the tokens of the server.
+	 */
+	public void setOptimisticUpdatesEnabled(boolean value)
+	{
+		getState().optimisticUpdatesEnabled = value;
+	}
+
+	public boolean isOptimisticUpdatesEnabled()
+	{
+		return getState(false).optimisticUpdatesEnabled;
+	}
+
+	/**
+	 * Replaces the input field or button by a text input, which suggests the tokenizables of the catalog whose value or
+	 * one of its words starts with the typed text. The catalog is sent to the client once, encoded like
+	 * {@link #setCompactTokenEncodingEnabled(boolean) compact tokens}, and filtered in the browser, so typing causes no
+	 * server round trips. Only a chosen suggestion is sent to the server, which adds its tokenizable then. Suited for
+	 * catalogs of up to some ten thousand tokenizables, larger ones should use an input field with a
+	 * {@link com.explicatis.ext_token_field.suggestions.TokenizableSuggestionProvider}.
+	 *
+	 * Calling it again replaces the catalog, setting an input field or button disables client side suggestions.
+	 */
+	public void setClientSideSuggestions(Collection<? extends Tokenizable> catalog)
+	{
+		requireNonNullTokenizables(catalog);
+		removeInputs();
+
+		suggestionCatalog = new ArrayList<>(catalog);
+		suggestionCatalogById = new LongObjectMap<>();
+		for (Tokenizable tokenizable : suggestionCatalog)
+		{
+			suggestionCatalogById.put(tokenizable.getIdentifier(), tokenizable);
+		}
+		suggestionCatalogVersion++;
+		isSuggestionCatalogSent = false;
+		getState().clientSuggestionsEnabled = true;
+	}
+
+	public boolean hasClientSideSuggestions()
+	{
+		return suggestionCatalog != null;
+	}
+
+	/**
+	 * @return the catalog of the client side suggestions or an empty list, if they are disabled
+	 */
+	public List<Tokenizable> getClientSideSuggestions()
+	{
+		return suggestionCatalog != null ? Collections.unmodifiableList(suggestionCatalog) : Collections.emptyList();
+	}
+
+	/**
+	 * Replaces the input field or button by a text input, into which many values separated by delimiters, e.g. a list
+	 * of codes, can be pasted or typed. The client splits the text in small chunks, so a large paste does not block
+	 * the browser, and sends the values in batches. Each batch is resolved by the resolver and the found tokenizables
+	 * are added at once, while the client shows the progress. When all values are resolved, a
+	 * {@link TokenizablesPastedEvent} reports the values, which were not found. They are also put back into the input.
+	 *
+	 * Setting an input field or button disables the paste input.
+	 */
+	public void setPasteInput(TokenizableResolver resolver)
+	{
+		Objects.requireNonNull(resolver, () -> "resolver must not be null");
+		removeInputs();
+		pasteResolver = resolver;
+		getState().pasteInputEnabled = true;
+	}
+
+	public boolean hasPasteInput()
+	{
+		return pasteResolver != null;
+	}
+
+	public TokenizableResolver getPasteResolver()
+	{
+		return pasteResolver;
+	}
+
+	/**
+	 * @param delimiters
+	 *            the chars separating pasted values, by default comma, semicolon, tab and line breaks
+	 */
+	public void setPasteDelimiters(String delimiters)
+	{
+		if (delimiters == null || delimiters.isEmpty())
+		{
+			throw new IllegalArgumentException("delimiters must not be empty");
+		}
+		getState().pasteDelimiters = delimiters;
+	}
+
+	public String getPasteDelimiters()
+	{
+		return getState(false).pasteDelimiters;
+	}
+
+	/**
+	 * the number of pasted values resolved per request, 500 by default
+	 */
+	public void setPasteBatchSize(int batchSize)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+		getState().pasteBatchSize = batchSize;
+	}
+
+	public int getPasteBatchSize()
+	{
+		return getState(false).pasteBatchSize;
+	}
+
+	/**
+	 * the number of values resolved per paste at most, 100,000 by default. The client puts the values beyond it back
+	 * into the input, the server ignores them.
+	 */
+	public void setPasteMaxValues(int maxValues)
+	{
+		if (maxValues < 1)
+		{
+			throw new IllegalArgumentException("maxValues must be positive");
+		}
+		getState().pasteMaxValues = maxValues;
+	}
+
+	public int getPasteMaxValues()
+	{
+		return getState(false).pasteMaxValues;
+	}
+
+	/**
+	 * @param text
+	 *            the progress shown while pasting, {0} is replaced by the checked, {1} by the split and {2} by the found
+	 *            values
+	 */
+	public void setPasteProgressText(String text)
+	{
+		getState().pasteProgressText = Objects.requireNonNull(text, () -> "text must not be null");
+	}
+
+	public String getPasteProgressText()
+	{
+		return getState(false).pasteProgressText;
+	}
+
+	/**
+	 * @param text
+	 *            the status shown after pasting, {0} is replaced by the values not found and {1} by the checked values
+	 */
+	public void setPasteUnresolvedText(String text)
+	{
+		getState().pasteUnresolvedText = Objects.requireNonNull(text, () -> "text must not be null");
+	}
+
+	public String getPasteUnresolvedText()
+	{
+		return getState(false).pasteUnresolvedText;
+	}
+
+	/**
+	 * @param text
+	 *            the status shown after pasting more than {@link #getPasteMaxValues()} values, {0} is replaced by the
+	 *            values over the limit and {1} by the limit
+	 */
+	public void setPasteLimitText(String text)
+	{
+		getState().pasteLimitText = Objects.requireNonNull(text, () -> "text must not be null");
+	}
+
+	public String getPasteLimitText()
+	{
+		return getState(false).pasteLimitText;
+	}
+
+	/**
+	 * Resolves a batch of pasted values and adds the found tokenizables. The values of a paste are collected, until
+	 * the last batch fires the {@link TokenizablesPastedEvent}. Values beyond the batch size or the maximum number of
+	 * values of a paste are ignored, the client does not send them.
+	 */
+	protected void handlePastedValues(int pasteId, List<String> values, boolean last)
+	{
+		if (pasteId != this.pasteId)
+		{
+			this.pasteId = pasteId;
+			pastedTokenizables = new ArrayList<>();
+			unresolvedPastedValues = new ArrayList<>();
+			pastedValueCount = 0;
+		}
+
+		int acceptedCount = Math.max(0, Math.min(Math.min(values.size(), getPasteBatchSize()), getPasteMaxValues() - pastedValueCount));
+		List<String> accepted = values.subList(0, acceptedCount);
+		pastedValueCount += acceptedCount;
+
+		boolean isResolvable = pasteResolver != null && lazyTokenSource == null && !isReadOnly() && !accepted.isEmpty();
+		Map<String, ? extends Tokenizable> resolved = Collections.emptyMap();
+		if (isResolvable)
+		{
+			try
+			{
+				resolved = pasteResolver.resolve(accepted);
+			}
+			catch (RuntimeException e)
+			{
+				// the client waits for the reply, so the values are answered as unresolved
+				LOGGER.log(Level.WARNING, "resolving " + accepted.size() + " pasted values failed", e);
+			}
+		}
+		List<Tokenizable> found = new ArrayList<>(resolved.size());
+		List<String> unresolved = new ArrayList<>();
+		for (String value : accepted)
+		{
+			Tokenizable tokenizable = resolved.get(value);
+			if (tokenizable != null)
+			{
+				found.add(tokenizable);
+			}
+			else
+			{
+				unresolved.add(value);
+			}
+		}
+
+		if (!found.isEmpty())
+		{
+			addTokenizables(found);
+		}
+		pastedTokenizables.addAll(found);
+		unresolvedPastedValues.addAll(unresolved);
+		getRpcProxy(ExtTokenFieldClientRpc.class).pastedValuesResolved(pasteId, found.size(), unresolved);
+
+		if (last)
+		{
+			fireEvent(new TokenizablesPastedEvent(this, pastedTokenizables, unresolvedPastedValues));
+			pastedTokenizables = new ArrayList<>();
+			unresolvedPastedValues = new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Resolves the values in the background on the executor, e.g. imported codes or URL parameters, and adds the found
+	 * tokenizables in one bulk update by {@link UI#access(com.vaadin.server.Command)}. A
+	 * {@link ParallelTokenizableResolver} resolves large collections in parallel batches on it. The executor should be
+	 * dedicated to the blocking lookups, not the common pool. The client shows the added tokens with the next
+	 * response, so push or polling has to be enabled, unless the values are resolved before the current request ends.
+	 *
+	 * @return completes with the values, which were not found, after the tokenizables were added, or exceptionally if
+	 *         the resolver failed or the UI was detached
+	 */
+	public CompletableFuture<List<String>> addTokenizablesAsync(Collection<String> values, TokenizableResolver resolver, Executor executor)
+	{
+		Objects.requireNonNull(values, () -> "values must not be null");
+		Objects.requireNonNull(resolver, () -> "resolver must not be null");
+		Objects.requireNonNull(executor, () -> "executor must not be null");
+		checkNotLazy();
+		UI ui = getUI();
+		if (ui == null)
+		{
+			throw new IllegalStateException("the field must be attached to resolve values in the background");
+		}
+
+		List<String> distinctValues = new ArrayList<>(new LinkedHashSet<>(values));
+		CompletableFuture<List<String>> result = new CompletableFuture<>();
+		resolver.resolveAsync(distinctValues, executor).whenComplete((resolved, failure) -> {
+			if (failure != null)
+			{
+				result.completeExceptionally(failure);
+				return;
+			}
+			try
+			{
+				ui.access(() -> {
+					List<Tokenizable> found = new ArrayList<>(resolved.size());
+					List<String> unresolved = new ArrayList<>();
+					for (String value : distinctValues)
+					{
+						Tokenizable tokenizable = resolved.get(value);
+						if (tokenizable != null)
+						{
+							found.add(tokenizable);
+						}
+						else
+						{
+							unresolved.add(value);
+						}
+					}
+					try
+					{
+						addTokenizables(found);
+					}
+					catch (RuntimeException e)
+					{
+						result.completeExceptionally(e);
+						throw e;
+					}
+					result.complete(unresolved);
+				});
+			}
+			catch (UIDetachedException e)
+			{
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	private void disableClientSideSuggestions()
+	{
+		suggestionCatalog = null;
+		suggestionCatalogById = null;
+		getState().clientSuggestionsEnabled = false;
+	}
+
+	private void disablePasteInput()
+	{
+		pasteResolver = null;
+		getState().pasteInputEnabled = false;
+	}
+
+	/**
+	 * the maximum number of client side suggestions shown at once, 10 by default
+	 */
+	public void setClientSuggestionLimit(int limit)
+	{
+		if (limit < 1)
+		{
+			throw new IllegalArgumentException("limit must be positive");
+		}
+		getState().clientSuggestionLimit = limit;
+	}
+
+	public int getClientSuggestionLimit()
+	{
+		return getState(false).clientSuggestionLimit;
+	}
+
 	public void setEnableDefaultDeleteTokenAction(boolean value)
 	{
 		DefaultDeleteTokenAction defaultDeleteTokenAction = new DefaultDeleteTokenAction();
@@ -163,88 +716,268 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 	public void addTokenizable(Tokenizable tokenizable)
 	{
 		Objects.requireNonNull(tokenizable, () -> "tokenizable must not be null");
+		addTokenizables(Collections.singletonList(tokenizable));
+	}
+
+	/**
+	 * Appends all tokenizables, which are not yet added, in one pass. Fires one value change and one
+	 * {@link TokensChangedEvent}. {@link TokenAddedEvent}s are only fired, if {@link TokenAddedListener}s are
+	 * registered.
+	 */
+	public void addTokenizables(Collection<? extends Tokenizable> tokenizables)
+	{
+		requireNonNullTokenizables(tokenizables);
+		checkNotLazy();
 
-		if (identifierToTokenizable.keySet().contains(tokenizable.getIdentifier()))
+		Set<Tokenizable> added = new LinkedHashSet<>();
+		for (Tokenizable tokenizable : tokenizables)
 		{
-			return;
+			if (!tokenStore.contains(tokenizable.getIdentifier()))
+			{
+				Token token = convertTokenizableToToken(tokenizable);
+				tokenStore.add(tokenizable, token);
+				addTokenOperation(TokenOperation.insert(token, null));
+				added.add(tokenizable);
+			}
 		}
 
-		Token token = convertTokenizableToToken(tokenizable);
-		identifierToTokenizable.put(tokenizable.getIdentifier(), tokenizable);
-		addToken(token);
-
-		List<Tokenizable> currentValue = getOptionalValue()
-				.orElseGet(() -> new LinkedList<Tokenizable>());
-
-		List<Tokenizable> copy = new LinkedList<>(currentValue);
-		copy.add(tokenizable);
-		setValue(copy);
+		if (added.isEmpty())
+		{
+			return;
+		}
+		tokenStoreChanged();
 
-		fireEvent(new TokenAddedEvent(this, tokenizable));
+		if (hasListeners(TokenAddedEvent.class))
+		{
+			added.forEach(tokenizable -> fireEvent(new TokenAddedEvent(this, tokenizable)));
+		}
+		fireTokensChangedEvent(added, Collections.emptySet(), Collections.emptySet());
 	}
 
 	public void removeTokenizable(Tokenizable tokenizable)
 	{
 		Objects.requireNonNull(tokenizable, () -> "tokenizable must not be null");
+		removeTokenizables(Collections.singletonList(tokenizable));
+	}
 
-		Token token = findTokenByTokenizable(tokenizable)//
-				.orElseThrow(() -> new NoSuchElementException(String.format("tokenizable %s could not be found", tokenizable.getStringValue())));
+	/**
+	 * Removes all tokenizables in one pass. Fires one value change and one {@link TokensChangedEvent}.
+	 * {@link TokenRemovedEvent}s are only fired, if {@link TokenRemovedListener}s are registered.
+	 *
+	 * @throws NoSuchElementException
+	 *             if one of the tokenizables is not added, nothing is removed then
+	 */
+	public void removeTokenizables(Collection<? extends Tokenizable> tokenizables)
+	{
+		requireNonNullTokenizables(tokenizables);
+		checkNotLazy();
 
-		removeToken(token);
+		for (Tokenizable tokenizable : tokenizables)
+		{
+			if (!tokenStore.contains(tokenizable.getIdentifier()))
+			{
+				throw new NoSuchElementException(String.format("tokenizable %s could not be found", tokenizable.getStringValue()));
+			}
+		}
 
-		List<Tokenizable> newList = getValue().stream()
-				.filter(t -> t.getIdentifier() != tokenizable.getIdentifier())
-				.collect(Collectors.toList());
+		Set<Tokenizable> removed = new LinkedHashSet<>();
+		for (Tokenizable tokenizable : tokenizables)
+		{
+			Tokenizable removedTokenizable = tokenStore.remove(tokenizable.getIdentifier());
+			if (removedTokenizable != null)
+			{
+				addTokenOperation(TokenOperation.remove(tokenizable.getIdentifier()));
+				removed.add(tokenizable);
+			}
+		}
 
-		identifierToTokenizable.remove(token.id);
-		setValue(newList);
+		if (removed.isEmpty())
+		{
+			return;
+		}
+		tokenStoreChanged();
 
-		fireEvent(new TokenRemovedEvent(this, tokenizable));
+		if (hasListeners(TokenRemovedEvent.class))
+		{
+			removed.forEach(tokenizable -> fireEvent(new TokenRemovedEvent(this, tokenizable)));
+		}
+		fireTokensChangedEvent(Collections.emptySet(), removed, Collections.emptySet());
 	}
 
-	protected void handleDroppedToken(Token sourceToken, Token targetToken, DropTargetType type)
+	/**
+	 * Replaces all tokens by the given tokenizables in their order, duplicates by identifier are skipped. Only the
+	 * needed inserts, removals and moves are applied, tokens of kept tokenizables are reused. Fires one value change
+	 * and one {@link TokensChangedEvent}, but no per token events.
+	 */
+	public void replaceTokenizables(Collection<? extends Tokenizable> tokenizables)
 	{
-		reorderToken(sourceToken, targetToken, type);
+		requireNonNullTokenizables(tokenizables);
+		checkNotLazy();
 
-		List<Tokenizable> currentValue = getOptionalValue()//
-				.orElseThrow(() -> new IllegalStateException("value cannot be null, if token was dropped"));
+		TokenDiff diff = applyTokenDiff(tokenizables);
+		if (diff.isEmpty())
+		{
+			return;
+		}
+		tokenStoreChanged();
 
-		List<Tokenizable> copy = new LinkedList<>(currentValue);
+		fireTokensChangedEvent(diff.added, diff.removed, diff.moved);
+	}
 
-		Tokenizable sourceTokenizable = findTokenizableInListByToken(currentValue, sourceToken);
-		Tokenizable targetTokenizable = findTokenizableInListByToken(currentValue, targetToken);
+	private static void requireNonNullTokenizables(Collection<? extends Tokenizable> tokenizables)
+	{
+		Objects.requireNonNull(tokenizables, () -> "tokenizables must not be null");
+		for (Tokenizable tokenizable : tokenizables)
+		{
+			Objects.requireNonNull(tokenizable, () -> "tokenizable must not be null");
+		}
+	}
 
-		int targetIndex = currentValue.indexOf(targetTokenizable);
-		targetIndex = DropTargetType.BEFORE.equals(type) ? targetIndex : targetIndex + 1;
+	private void fireTokensChangedEvent(Set<Tokenizable> added, Set<Tokenizable> removed, Set<Tokenizable> moved)
+	{
+		if (hasListeners(TokensChangedEvent.class))
+		{
+			fireEvent(new TokensChangedEvent(this, added, removed, moved));
+		}
+	}
 
-		boolean afterLast = targetIndex == currentValue.size() && DropTargetType.AFTER.equals(type);
+	protected void handleDroppedToken(Token sourceToken, Token targetToken, DropTargetType type)
+	{
+		handleDroppedToken(sourceToken.id, targetToken.id, type);
+	}
 
-		if (isIndexOfALowerThanB(currentValue, sourceTokenizable, targetTokenizable))
-			targetIndex--;
+	/**
+	 * moves the source token before or after the target token, called when a token was dropped on the client
+	 */
+	protected void handleDroppedToken(long sourceTokenId, long targetTokenId, DropTargetType type)
+	{
+		checkNotLazy();
+
+		Tokenizable sourceTokenizable = getStoredTokenizable(sourceTokenId);
+		Tokenizable targetTokenizable = getStoredTokenizable(targetTokenId);
 
-		copy.remove(sourceTokenizable);
-		if (afterLast)
+		tokenStore.move(sourceTokenId, targetTokenId, type);
+		addTokenOperation(TokenOperation.move(sourceTokenId, tokenStore.getNextIdentifier(sourceTokenId)));
+		tokenStoreChanged();
+
+		fireEvent(new TokenReorderedEvent(this, sourceTokenizable, targetTokenizable, type));
+		fireTokensChangedEvent(Collections.emptySet(), Collections.emptySet(), Collections.singleton(sourceTokenizable));
+	}
+
+	/**
+	 * Applies a batch of interactions of the client as one transaction: the value changes once and the client gets
+	 * one delta. Interactions on tokens, which were removed by a previous interaction of the batch, are skipped.
+	 * 
+	 * If the client already applied an interaction optimistically, each one is reconciled on its own: an applied
+	 * interaction is confirmed by the delta, as its operations are idempotent on the client, also if the tokens changed
+	 * on the server meanwhile. Only if an interaction was rejected, the client gets a snapshot, which rolls back its
+	 * local change.
+	 */
+	protected void handleTokenInteractions(List<TokenInteraction> interactions)
+	{
+		transactionDepth++;
+		try
 		{
-			copy.add(sourceTokenizable);
+			for (TokenInteraction interaction : interactions)
+			{
+				boolean applied = handleTokenInteraction(interaction);
+				if (interaction.optimistic && !applied)
+				{
+					requireTokenSnapshot();
+				}
+			}
 		}
-		else
+		finally
 		{
-			copy.add(targetIndex, sourceTokenizable);
+			transactionDepth--;
+			if (transactionDepth == 0 && isValueChangePending)
+			{
+				isValueChangePending = false;
+				tokenStoreChanged();
+			}
 		}
+	}
 
-		setValue(copy);
-
-		fireEvent(new TokenReorderedEvent(this, sourceTokenizable, targetTokenizable, type));
+	/**
+	 * @return false, if the interaction was skipped or, for an optimistic delete, the token is still there afterwards
+	 */
+	private boolean handleTokenInteraction(TokenInteraction interaction)
+	{
+		switch (interaction.type)
+		{
+			case ACTION_CLICKED:
+				TokenizableAction action = identifierToTokenizableAction.get(interaction.actionIdentifier);
+				Tokenizable tokenizable = findTokenizableById(interaction.tokenId);
+				if (action != null && tokenizable != null)
+				{
+					action.onClick(tokenizable);
+				}
+				return !interaction.optimistic || !tokenStore.contains(interaction.tokenId);
+			case DROPPED:
+				if (lazyTokenSource == null && tokenStore.contains(interaction.tokenId) && tokenStore.contains(interaction.targetTokenId))
+				{
+					handleDroppedToken(interaction.tokenId, interaction.targetTokenId, interaction.dropTargetType);
+					return true;
+				}
+				return false;
+			case SUGGESTION_CHOSEN:
+				Tokenizable chosen = suggestionCatalogById != null ? suggestionCatalogById.get(interaction.tokenId) : null;
+				if (lazyTokenSource == null && chosen != null && !isReadOnly())
+				{
+					addTokenizable(chosen);
+					return true;
+				}
+				return false;
+		}
+		return false;
 	}
 
-	private Tokenizable findTokenizableInListByToken(List<Tokenizable> list, Token token)
+	private Tokenizable getStoredTokenizable(long identifier)
 	{
-		return list.stream()
-				.filter(tokenizable -> tokenizable.getIdentifier() == token.id)
-				.findAny()
+		return Optional.ofNullable(tokenStore.getTokenizable(identifier))//
 				.orElseThrow(() -> new NoSuchElementException("could not find token"));
 	}
 
+	/**
+	 * Updates the label of the token of an already added tokenizable, e.g. after its string value has changed. The
+	 * given instance replaces the stored one in the value.
+	 */
+	public void refreshTokenizable(Tokenizable tokenizable)
+	{
+		Objects.requireNonNull(tokenizable, () -> "tokenizable must not be null");
+
+		findTokenByTokenizable(tokenizable)//
+				.orElseThrow(() -> new NoSuchElementException(String.format("tokenizable %s could not be found", tokenizable.getStringValue())));
+
+		Token token = convertTokenizableToToken(tokenizable);
+		tokenStore.replace(tokenizable, token);
+		addTokenOperation(TokenOperation.relabel(token));
+		tokenStoreChanged();
+	}
+
+	/**
+	 * publishes the content of the token store as new value, without rebuilding the token store in
+	 * {@link #doSetValue(List)}. Within a batch of interactions it is published once at the end.
+	 */
+	private void tokenStoreChanged()
+	{
+		if (transactionDepth > 0)
+		{
+			isValueChangePending = true;
+			return;
+		}
+
+		isInternalValueChange = true;
+		try
+		{
+			setValue(tokenStore.getTokenizables());
+		}
+		finally
+		{
+			isInternalValueChange = false;
+		}
+	}
+
 	public boolean hasTokenizableAction(TokenizableAction tokenizableAction)
 	{
 		return findTokenActionByTokenizableAction(tokenizableAction).isPresent();
@@ -261,50 +994,73 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 
 	protected Optional<Token> findTokenByTokenizable(Tokenizable tokenizable)
 	{
-		return getState().tokens.stream()
-				.filter(token -> token.id == tokenizable.getIdentifier())
-				.findAny();
+		return Optional.ofNullable(tokenStore.getToken(tokenizable.getIdentifier()));
 	}
 
-	private void addToken(Token token)
+	private void addTokenOperation(TokenOperation operation)
 	{
-		getState().tokens.add(token);
+		pendingTokenOperations.add(operation);
+		markAsDirty();
 	}
 
-	private void removeToken(Token token)
+	private void requireTokenSnapshot()
 	{
-		getState().tokens.remove(token);
+		pendingTokenOperations.clear();
+		isTokenSnapshotRequired = true;
+		markAsDirty();
 	}
 
-	private void reorderToken(Token source, Token target, DropTargetType type)
+	/**
+	 * Sends the token changes since the last response. A full snapshot is only sent on attach, on resync request of
+	 * the client or if the snapshot is smaller than the operations.
+	 */
+	@Override
+	public void beforeClientResponse(boolean initial)
 	{
-		List<Token> tokens = getState().tokens;
-		int targetIndex = tokens.indexOf(target);
-		targetIndex = DropTargetType.BEFORE.equals(type) ? targetIndex : targetIndex + 1;
+		super.beforeClientResponse(initial);
 
-		boolean afterLast = targetIndex == tokens.size() && DropTargetType.AFTER.equals(type);
-
-		if (isIndexOfALowerThanB(tokens, source, target))
-			targetIndex--;
-
-		tokens.remove(source);
-		if (afterLast)
+		ExtTokenFieldClientRpc clientRpc = getRpcProxy(ExtTokenFieldClientRpc.class);
+		if (lazyTokenSource != null)
 		{
-			tokens.add(source);
+			if (initial || isTokenSnapshotRequired)
+			{
+				clientRpc.resetTokens(++tokenVersion, lazyTokenSource.size());
+			}
 		}
-		else
+		else if (initial || isTokenSnapshotRequired || pendingTokenOperations.size() > tokenStore.size())
 		{
-			tokens.add(targetIndex, source);
+			if (compactTokenEncodingEnabled)
+			{
+				clientRpc.setTokenColumns(++tokenVersion, TokenColumns.encode(tokenStore.getTokens()));
+			}
+			else
+			{
+				clientRpc.setTokens(++tokenVersion, tokenStore.getTokens());
+			}
 		}
+		else if (!pendingTokenOperations.isEmpty())
+		{
+			clientRpc.applyTokenOperations(++tokenVersion, pendingTokenOperations);
+		}
+
+		pendingTokenOperations = new ArrayList<>();
+		isTokenSnapshotRequired = false;
 
-		getState().tokens = tokens;
+		if (suggestionCatalog != null && (initial || !isSuggestionCatalogSent))
+		{
+			List<Token> catalogTokens = suggestionCatalog.stream()//
+					.map(this::convertTokenizableToToken)//
+					.collect(Collectors.toList());
+			clientRpc.setSuggestionCatalog(suggestionCatalogVersion, TokenColumns.encode(catalogTokens));
+			isSuggestionCatalogSent = true;
+		}
 	}
 
 	public void setInputField(ComboBox<?> field)
 	{
 		if (field != null)
 		{
-			removeFieldOrButton();
+			removeInputs();
 			addComponent(field);
 			getState().inputField = field;
 		}
@@ -314,7 +1070,7 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 	{
 		if (button != null)
 		{
-			removeFieldOrButton();
+			removeInputs();
 			addComponent(button);
 			getState().inputButton = button;
 		}
@@ -330,6 +1086,13 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 		return getInputButton() != null;
 	}
 
+	private void removeInputs()
+	{
+		disableClientSideSuggestions();
+		disablePasteInput();
+		removeFieldOrButton();
+	}
+
 	private void removeFieldOrButton()
 	{
 		if (iterator().hasNext())
@@ -356,6 +1119,12 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 		return (ExtTokenFieldState) super.getState();
 	}
 
+	@Override
+	protected ExtTokenFieldState getState(boolean markAsDirty)
+	{
+		return (ExtTokenFieldState) super.getState(markAsDirty);
+	}
+
 	@Override
 	public Iterator<Component> iterator()
 	{
@@ -417,6 +1186,10 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 	@Override
 	public List<Tokenizable> getValue()
 	{
+		if (isValueChangePending)
+		{
+			return tokenStore.getTokenizables();
+		}
 		if (value == null)
 		{
 			return getEmptyValue();
@@ -424,24 +1197,42 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 		return value;
 	}
 
+	/**
+	 * The token store publishes a new snapshot only after it changed, so an internal change skips the comparison of
+	 * all tokenizables, which would cost O(n) for every move of a large field.
+	 */
+	@Override
+	protected boolean isDifferentValue(List<Tokenizable> newValue)
+	{
+		if (isInternalValueChange)
+		{
+			return newValue != value;
+		}
+		return super.isDifferentValue(newValue);
+	}
+
 	@Override
 	protected void doSetValue(List<Tokenizable> value)
 	{
+		checkNotLazy();
 		this.value = value;
-		identifierToTokenizable.clear();
-		List<Token> newList = new ArrayList<>();
 
-		if (value != null && !value.isEmpty())
+		if (isInternalValueChange)
 		{
-			for (Tokenizable t : value)
-			{
-				Token token = convertTokenizableToToken(t);
-				identifierToTokenizable.put(t.getIdentifier(), t);
-				newList.add(token);
-			}
+			return;
 		}
 
-		getState().tokens = newList;
+		applyTokenDiff(value != null ? value : Collections.emptyList());
+	}
+
+	/**
+	 * changes the tokens to the given tokenizables by a keyed diff and queues only the resulting operations
+	 */
+	private TokenDiff applyTokenDiff(Collection<? extends Tokenizable> tokenizables)
+	{
+		TokenDiff diff = TokenDiff.apply(tokenStore, tokenizables, this::convertTokenizableToToken);
+		diff.operations.forEach(this::addTokenOperation);
+		return diff;
 	}
 
 	@Override
@@ -465,12 +1256,20 @@ public class ExtTokenField extends AbstractField<List<Tokenizable>> implements H
 		return addListener(TokenReorderedEvent.class, listener, TokenReorderedEvent.EVENT_METHOD);
 	}
 
-	private static <V> boolean isIndexOfALowerThanB(List<V> list, V a, V b)
+	/**
+	 * the listener is notified once per change, also for batches of the bulk methods
+	 */
+	public Registration addTokensChangedListener(TokensChangedListener listener)
 	{
-		int indexOfA = list.indexOf(a);
-		int indexOfB = list.indexOf(b);
+		return addListener(TokensChangedEvent.class, listener, TokensChangedEvent.EVENT_METHOD);
+	}
 
-		return indexOfA < indexOfB;
+	/**
+	 * the listener is notified, when all values of a paste into the paste input were resolved
+	 */
+	public Registration addTokenizablesPastedListener(TokenizablesPastedListener listener)
+	{
+		return addListener(TokenizablesPastedEvent.class, listener, TokenizablesPastedEvent.EVENT_METHOD);
 	}
 
 	/**
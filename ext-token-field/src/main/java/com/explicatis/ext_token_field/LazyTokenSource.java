@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.data.provider.Query;
+
+/**
+ * Paged access to the tokenizables of a {@link DataProvider} for the lazy mode of {@link ExtTokenField}.
+ *
+ * Only the positions of already fetched identifiers and a bounded window of the most recently used tokenizables are
+ * kept in memory. A tokenizable evicted from the window is fetched again by its known position. The last page read by
+ * {@link #get(int)} is kept, so a sequential scan queries the data provider once per page.
+ */
+class LazyTokenSource<T extends Tokenizable, F> implements Serializable
+{
+
+	static final int						PAGE_SIZE		= 100;
+	static final int						MAX_PAGE_SIZE	= 500;
+
+	private final DataProvider<T, F>		dataProvider;
+	private final Map<Long, Integer>		positions		= new HashMap<>();
+	private final Map<Long, Tokenizable>	window;
+	private int								size			= -1;
+	private int								pageOffset		= -1;
+	private List<Tokenizable>				page;
+
+	LazyTokenSource(DataProvider<T, F> dataProvider, int windowSize)
+	{
+		this.dataProvider = dataProvider;
+		this.window = new LinkedHashMap<Long, Tokenizable>(16, 0.75f, true)
+		{
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Tokenizable> eldest)
+			{
+				return size() > windowSize;
+			}
+		};
+	}
+
+	public DataProvider<T, F> getDataProvider()
+	{
+		return dataProvider;
+	}
+
+	public int size()
+	{
+		if (size < 0)
+		{
+			size = dataProvider.size(new Query<>());
+		}
+		return size;
+	}
+
+	/**
+	 * fetches the tokenizables of the given range and keeps them in the window
+	 */
+	public List<Tokenizable> fetch(int offset, int limit)
+	{
+		int boundedLimit = Math.min(Math.min(limit, MAX_PAGE_SIZE), size() - offset);
+		if (offset < 0 || boundedLimit <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		List<Tokenizable> result = dataProvider.fetch(new Query<>(offset, boundedLimit, Collections.emptyList(), null, null))//
+				.collect(Collectors.toList());
+
+		for (int i = 0; i < result.size(); i++)
+		{
+			Tokenizable tokenizable = result.get(i);
+			positions.put(tokenizable.getIdentifier(), offset + i);
+			window.put(tokenizable.getIdentifier(), tokenizable);
+		}
+
+		return result;
+	}
+
+	public Tokenizable get(int index)
+	{
+		if (index < 0 || index >= size())
+		{
+			throw new IndexOutOfBoundsException(String.format("index %d, size %d", index, size()));
+		}
+
+		int offset = index - index % PAGE_SIZE;
+		if (page == null || pageOffset != offset)
+		{
+			page = fetch(offset, PAGE_SIZE);
+			pageOffset = offset;
+		}
+		return page.get(index - offset);
+	}
+
+	/**
+	 * @return the tokenizable with the given identifier or null, if it was never fetched
+	 */
+	public Tokenizable getTokenizable(long identifier)
+	{
+		Tokenizable result = window.get(identifier);
+		if (result == null && positions.containsKey(identifier))
+		{
+			int position = positions.get(identifier);
+			fetch(position, 1);
+			result = window.get(identifier);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true, if a tokenizable with the given identifier was already fetched
+	 */
+	public boolean contains(long identifier)
+	{
+		return positions.containsKey(identifier);
+	}
+
+	/**
+	 * forgets all fetched data, e.g. after the data of the data provider changed
+	 */
+	public void reset()
+	{
+		size = -1;
+		pageOffset = -1;
+		page = null;
+		positions.clear();
+		window.clear();
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Value of an {@link ExtTokenField} in lazy mode. Elements are fetched from the data provider on access. Two lazy
+ * values are only equal, if they are the same instance, so comparing values never fetches all elements.
+ */
+class LazyTokenizableList extends AbstractList<Tokenizable> implements RandomAccess, Serializable
+{
+
+	private final LazyTokenSource<?, ?> source;
+
+	LazyTokenizableList(LazyTokenSource<?, ?> source)
+	{
+		this.source = source;
+	}
+
+	@Override
+	public Tokenizable get(int index)
+	{
+		return source.get(index);
+	}
+
+	@Override
+	public int size()
+	{
+		return source.size();
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		return this == o;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return System.identityHashCode(this);
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to objects, so keys are neither boxed nor wrapped in nodes.
+ *
+ * Collisions are resolved by linear probing, removals shift the following entries back instead of leaving tombstones.
+ * The capacity is a power of two and the map is kept at most half full. Null values are not supported.
+ */
+class LongObjectMap<V> implements Serializable
+{
+
+	private static final int	MIN_CAPACITY	= 8;
+
+	private long[]				keys;
+	private Object[]			values;
+	private int					size;
+
+	LongObjectMap()
+	{
+		keys = new long[MIN_CAPACITY];
+		values = new Object[MIN_CAPACITY];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean containsKey(long key)
+	{
+		return values[indexOf(key)] != null;
+	}
+
+	/**
+	 * @return the value of the key or null, if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		return (V) values[indexOf(key)];
+	}
+
+	/**
+	 * @return the previous value of the key or null, if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value)
+	{
+		if (value == null)
+		{
+			throw new IllegalArgumentException("value must not be null");
+		}
+
+		int index = indexOf(key);
+		V previous = (V) values[index];
+		keys[index] = key;
+		values[index] = value;
+		if (previous == null && ++size > values.length / 2)
+		{
+			resize(values.length * 2);
+		}
+		return previous;
+	}
+
+	/**
+	 * @return the removed value or null, if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		int index = indexOf(key);
+		V previous = (V) values[index];
+		if (previous == null)
+		{
+			return null;
+		}
+
+		// shift back the following entries of the probe sequence, which would not be found anymore
+		int mask = values.length - 1;
+		int free = index;
+		for (int i = (free + 1) & mask; values[i] != null; i = (i + 1) & mask)
+		{
+			int home = hash(keys[i]) & mask;
+			if (((i - home) & mask) >= ((i - free) & mask))
+			{
+				keys[free] = keys[i];
+				values[free] = values[i];
+				free = i;
+			}
+		}
+		values[free] = null;
+		size--;
+		return previous;
+	}
+
+	public void clear()
+	{
+		if (values.length > MIN_CAPACITY)
+		{
+			keys = new long[MIN_CAPACITY];
+			values = new Object[MIN_CAPACITY];
+		}
+		else
+		{
+			Arrays.fill(values, null);
+		}
+		size = 0;
+	}
+
+	/**
+	 * @return the slot of the key or the free slot, where it would be inserted
+	 */
+	private int indexOf(long key)
+	{
+		int mask = values.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null && keys[index] != key)
+		{
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++)
+		{
+			if (oldValues[i] != null)
+			{
+				int index = hash(oldKeys[i]) & mask;
+				while (values[index] != null)
+				{
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * spreads sequential identifiers over the table
+	 */
+	static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
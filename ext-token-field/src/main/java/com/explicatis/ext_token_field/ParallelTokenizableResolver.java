@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolver, which splits the values into batches and resolves them by a delegate in parallel on an executor, e.g.
+ * one querying a database per batch. To be shared by all sessions.
+ *
+ * The recently resolved values are cached, least recently used ones are evicted beyond the cache size. Values, which
+ * could not be resolved, are not cached, so they are found once they are created.
+ *
+ * The executor runs blocking lookups, so it should be a bounded pool dedicated to them, not the common pool. It is not
+ * serialized, a deserialized resolver resolves the batches in the calling thread.
+ */
+public class ParallelTokenizableResolver implements TokenizableResolver
+{
+
+	public static final int							DEFAULT_BATCH_SIZE	= 100;
+	public static final int							DEFAULT_CACHE_SIZE	= 10000;
+
+	private final TokenizableResolver				delegate;
+	private final int								batchSize;
+	private final int								cacheSize;
+	private final LongAdder							hits				= new LongAdder();
+	private final LongAdder							misses				= new LongAdder();
+	private transient Executor						executor;
+	private transient Map<String, Tokenizable>		cache;
+
+	public ParallelTokenizableResolver(TokenizableResolver delegate, Executor executor)
+	{
+		this(delegate, executor, DEFAULT_BATCH_SIZE, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param batchSize
+	 *            the maximum number of values passed to the delegate at once
+	 * @param cacheSize
+	 *            the maximum number of cached resolutions, 0 disables the cache
+	 */
+	public ParallelTokenizableResolver(TokenizableResolver delegate, Executor executor, int batchSize, int cacheSize)
+	{
+		this.delegate = Objects.requireNonNull(delegate, () -> "delegate must not be null");
+		this.executor = Objects.requireNonNull(executor, () -> "executor must not be null");
+		if (batchSize < 1 || cacheSize < 0)
+		{
+			throw new IllegalArgumentException("batchSize must be positive and cacheSize must not be negative");
+		}
+		this.batchSize = batchSize;
+		this.cacheSize = cacheSize;
+		this.cache = createCache();
+	}
+
+	private Map<String, Tokenizable> createCache()
+	{
+		return new LinkedHashMap<String, Tokenizable>(16, 0.75f, true)
+		{
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Tokenizable> eldest)
+			{
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	public TokenizableResolver getDelegate()
+	{
+		return delegate;
+	}
+
+	public Executor getExecutor()
+	{
+		return executor;
+	}
+
+	/**
+	 * resolves the values in parallel on the executor of the resolver and waits for the result
+	 */
+	@Override
+	public Map<String, ? extends Tokenizable> resolve(Collection<String> values)
+	{
+		try
+		{
+			return resolveAsync(values, executor).join();
+		}
+		catch (CompletionException e)
+		{
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Takes the cached values from the cache and passes the others in batches to the delegate, all batches in
+	 * parallel on the given executor. The future fails, if one of the batches failed.
+	 */
+	@Override
+	public CompletableFuture<Map<String, ? extends Tokenizable>> resolveAsync(Collection<String> values, Executor executor)
+	{
+		Map<String, Tokenizable> result = new HashMap<>();
+		List<String> uncached = new ArrayList<>();
+		Set<String> distinctValues = new LinkedHashSet<>(values);
+		synchronized (cache)
+		{
+			for (String value : distinctValues)
+			{
+				Tokenizable tokenizable = cache.get(value);
+				if (tokenizable != null)
+				{
+					result.put(value, tokenizable);
+				}
+				else
+				{
+					uncached.add(value);
+				}
+			}
+		}
+		hits.add(result.size());
+		misses.add(uncached.size());
+
+		List<CompletableFuture<Map<String, ? extends Tokenizable>>> batches = new ArrayList<>();
+		for (int from = 0; from < uncached.size(); from += batchSize)
+		{
+			List<String> batch = new ArrayList<>(uncached.subList(from, Math.min(from + batchSize, uncached.size())));
+			batches.add(CompletableFuture.supplyAsync(() -> delegate.resolve(batch), executor));
+		}
+
+		return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()])).thenApply(done -> {
+			Map<String, Tokenizable> resolved = new HashMap<>();
+			for (CompletableFuture<Map<String, ? extends Tokenizable>> batch : batches)
+			{
+				resolved.putAll(batch.join());
+			}
+			cache(resolved);
+			result.putAll(resolved);
+			return result;
+		});
+	}
+
+	private void cache(Map<String, Tokenizable> resolved)
+	{
+		if (cacheSize == 0)
+		{
+			return;
+		}
+		synchronized (cache)
+		{
+			cache.putAll(resolved);
+		}
+	}
+
+	/**
+	 * removes all cached resolutions, e.g. after tokenizables were renamed
+	 */
+	public void invalidateAll()
+	{
+		synchronized (cache)
+		{
+			cache.clear();
+		}
+	}
+
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		executor = Runnable::run;
+		cache = createCache();
+	}
+}
@@ -18,7 +18,9 @@
 
 package com.explicatis.ext_token_field;
 
-public class SimpleTokenizable implements Tokenizable
+import java.io.Serializable;
+
+public class SimpleTokenizable implements Tokenizable, Serializable
 {
 
 	private long	id;
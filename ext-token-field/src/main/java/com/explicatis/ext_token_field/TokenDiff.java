@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.explicatis.ext_token_field.shared.IncreasingSubsequence;
+import com.explicatis.ext_token_field.shared.Token;
+import com.explicatis.ext_token_field.shared.TokenOperation;
+
+/**
+ * Keyed diff of a {@link TokenStore} against a new list of tokenizables, matched by their identifier.
+ *
+ * Applying the diff removes the missing tokens, inserts the new ones and moves only kept tokens, which are not part of
+ * the longest subsequence already in the new order. Tokens of kept tokenizables are reused, they are only converted
+ * again, if the tokenizable instance changed. The operations for the client are collected in the order they were
+ * applied.
+ */
+class TokenDiff
+{
+
+	final Set<Tokenizable>		added		= new LinkedHashSet<>();
+	final Set<Tokenizable>		removed		= new LinkedHashSet<>();
+	final Set<Tokenizable>		moved		= new LinkedHashSet<>();
+	final List<TokenOperation>	operations	= new ArrayList<>();
+
+	private TokenDiff()
+	{
+	}
+
+	/**
+	 * changes the store to contain the given tokenizables in their order, duplicates by identifier are skipped
+	 */
+	static TokenDiff apply(TokenStore store, Collection<? extends Tokenizable> tokenizables, Function<Tokenizable, Token> converter)
+	{
+		TokenDiff diff = new TokenDiff();
+
+		Map<Long, Tokenizable> requested = new LinkedHashMap<>();
+		for (Tokenizable tokenizable : tokenizables)
+		{
+			requested.putIfAbsent(tokenizable.getIdentifier(), tokenizable);
+		}
+
+		// index of every kept token in the new order, in the current order
+		Map<Long, Integer> newIndexes = new LinkedHashMap<>();
+		int index = 0;
+		for (Long identifier : requested.keySet())
+		{
+			newIndexes.put(identifier, index++);
+		}
+
+		List<Tokenizable> current = store.getTokenizables();
+		int[] keptIndexes = new int[current.size()];
+		int keptCount = 0;
+		for (Tokenizable tokenizable : current)
+		{
+			Integer newIndex = newIndexes.get(tokenizable.getIdentifier());
+			if (newIndex == null)
+			{
+				diff.removed.add(tokenizable);
+			}
+			else
+			{
+				keptIndexes[keptCount++] = newIndex;
+			}
+		}
+
+		for (Tokenizable tokenizable : diff.removed)
+		{
+			store.remove(tokenizable.getIdentifier());
+			diff.operations.add(TokenOperation.remove(tokenizable.getIdentifier()));
+		}
+
+		boolean[] isStable = new boolean[requested.size()];
+		for (int stableIndex : IncreasingSubsequence.longest(Arrays.copyOf(keptIndexes, keptCount)))
+		{
+			isStable[stableIndex] = true;
+		}
+
+		// from the end, so the successor of every token is already in place
+		List<Tokenizable> ordered = new ArrayList<>(requested.values());
+		Long beforeIdentifier = null;
+		for (int i = ordered.size() - 1; i >= 0; i--)
+		{
+			Tokenizable tokenizable = ordered.get(i);
+			long identifier = tokenizable.getIdentifier();
+
+			if (!store.contains(identifier))
+			{
+				Token token = converter.apply(tokenizable);
+				store.add(tokenizable, token, beforeIdentifier);
+				diff.added.add(tokenizable);
+				diff.operations.add(TokenOperation.insert(token, beforeIdentifier));
+			}
+			else
+			{
+				diff.replaceChanged(store, tokenizable, converter);
+				if (!isStable[i])
+				{
+					store.moveBefore(identifier, beforeIdentifier);
+					diff.moved.add(tokenizable);
+					diff.operations.add(TokenOperation.move(identifier, beforeIdentifier));
+				}
+			}
+			beforeIdentifier = identifier;
+		}
+
+		return diff;
+	}
+
+	boolean isEmpty()
+	{
+		return operations.isEmpty();
+	}
+
+	/**
+	 * replaces the stored tokenizable by a different instance with the same identifier, relabels its token if the
+	 * value changed
+	 */
+	private void replaceChanged(TokenStore store, Tokenizable tokenizable, Function<Tokenizable, Token> converter)
+	{
+		long identifier = tokenizable.getIdentifier();
+		if (store.getTokenizable(identifier) == tokenizable)
+		{
+			return;
+		}
+
+		Token token = store.getToken(identifier);
+		Token converted = converter.apply(tokenizable);
+		if (Objects.equals(token.value, converted.value))
+		{
+			store.replace(tokenizable, token);
+		}
+		else
+		{
+			store.replace(tokenizable, converted);
+			operations.add(TokenOperation.relabel(converted));
+		}
+	}
+}
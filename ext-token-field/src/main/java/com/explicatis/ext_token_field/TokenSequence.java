@@ -0,0 +1,398 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.explicatis.ext_token_field.TokenStore.Entry;
+
+/**
+ * Immutable, persistent sequence of the entries of a {@link TokenStore}, ordered by their position key.
+ *
+ * The sequence is an AVL tree annotated with subtree sizes. Adding or removing an entry copies only the path to it,
+ * all other nodes are shared with the previous sequence. So every change is O(log n), and the sequence itself can be
+ * used as value of the field, without copying it. As list it contains the tokenizables of the entries.
+ */
+final class TokenSequence extends AbstractList<Tokenizable> implements Serializable
+{
+
+	static final TokenSequence	EMPTY	= new TokenSequence(null);
+
+	private final Node			root;
+	private transient int		hashCode;
+
+	private static final class Node implements Serializable
+	{
+
+		final long	key;
+		final Entry	entry;
+		final Node	left;
+		final Node	right;
+		final int	height;
+		final int	size;
+
+		Node(long key, Entry entry, Node left, Node right)
+		{
+			this.key = key;
+			this.entry = entry;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+
+	private TokenSequence(Node root)
+	{
+		this.root = root;
+	}
+
+	/**
+	 * @return a balanced sequence of the given entries, their positions must be ascending
+	 */
+	static TokenSequence of(List<Entry> orderedEntries)
+	{
+		return new TokenSequence(build(orderedEntries, 0, orderedEntries.size()));
+	}
+
+	/**
+	 * @return a sequence with the entry added at its position
+	 */
+	TokenSequence with(Entry entry)
+	{
+		return new TokenSequence(insert(root, entry.position, entry));
+	}
+
+	/**
+	 * @return a sequence without the entry at the given position
+	 */
+	TokenSequence without(long position)
+	{
+		return new TokenSequence(delete(root, position));
+	}
+
+	/**
+	 * @return the greatest position less than the given one or null, if there is none
+	 */
+	Long lowerKey(long position)
+	{
+		Long result = null;
+		Node node = root;
+		while (node != null)
+		{
+			if (node.key < position)
+			{
+				result = node.key;
+				node = node.right;
+			}
+			else
+			{
+				node = node.left;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the least position greater than the given one or null, if there is none
+	 */
+	Long higherKey(long position)
+	{
+		Long result = null;
+		Node node = root;
+		while (node != null)
+		{
+			if (node.key > position)
+			{
+				result = node.key;
+				node = node.left;
+			}
+			else
+			{
+				node = node.right;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the entry at the given position or null, if there is none
+	 */
+	Entry getEntryAt(long position)
+	{
+		Node node = root;
+		while (node != null && node.key != position)
+		{
+			node = position < node.key ? node.left : node.right;
+		}
+		return node != null ? node.entry : null;
+	}
+
+	/**
+	 * @return the last position, the sequence must not be empty
+	 */
+	long lastKey()
+	{
+		Node node = root;
+		if (node == null)
+		{
+			throw new NoSuchElementException();
+		}
+		while (node.right != null)
+		{
+			node = node.right;
+		}
+		return node.key;
+	}
+
+	/**
+	 * @return the entries in order
+	 */
+	Iterable<Entry> entries()
+	{
+		return () -> new EntryIterator(root);
+	}
+
+	@Override
+	public Tokenizable get(int index)
+	{
+		if (index < 0 || index >= size())
+		{
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+		}
+
+		Node node = root;
+		while (true)
+		{
+			int leftSize = size(node.left);
+			if (index < leftSize)
+			{
+				node = node.left;
+			}
+			else if (index == leftSize)
+			{
+				return node.entry.tokenizable;
+			}
+			else
+			{
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	@Override
+	public int size()
+	{
+		return size(root);
+	}
+
+	@Override
+	public Iterator<Tokenizable> iterator()
+	{
+		EntryIterator entries = new EntryIterator(root);
+		return new Iterator<Tokenizable>()
+		{
+
+			@Override
+			public boolean hasNext()
+			{
+				return entries.hasNext();
+			}
+
+			@Override
+			public Tokenizable next()
+			{
+				return entries.next().tokenizable;
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o)
+		{
+			return true;
+		}
+		if (o instanceof TokenSequence)
+		{
+			TokenSequence other = (TokenSequence) o;
+			if (root == other.root)
+			{
+				return true;
+			}
+			if (size() != other.size())
+			{
+				return false;
+			}
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		if (hashCode == 0)
+		{
+			hashCode = super.hashCode();
+		}
+		return hashCode;
+	}
+
+	private static int height(Node node)
+	{
+		return node != null ? node.height : 0;
+	}
+
+	private static int size(Node node)
+	{
+		return node != null ? node.size : 0;
+	}
+
+	private static Node build(List<Entry> orderedEntries, int from, int to)
+	{
+		if (from >= to)
+		{
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		Entry entry = orderedEntries.get(middle);
+		return new Node(entry.position, entry, build(orderedEntries, from, middle), build(orderedEntries, middle + 1, to));
+	}
+
+	private static Node insert(Node node, long key, Entry entry)
+	{
+		if (node == null)
+		{
+			return new Node(key, entry, null, null);
+		}
+		if (key < node.key)
+		{
+			return balance(node.key, node.entry, insert(node.left, key, entry), node.right);
+		}
+		if (key > node.key)
+		{
+			return balance(node.key, node.entry, node.left, insert(node.right, key, entry));
+		}
+		return new Node(key, entry, node.left, node.right);
+	}
+
+	private static Node delete(Node node, long key)
+	{
+		if (node == null)
+		{
+			return null;
+		}
+		if (key < node.key)
+		{
+			return balance(node.key, node.entry, delete(node.left, key), node.right);
+		}
+		if (key > node.key)
+		{
+			return balance(node.key, node.entry, node.left, delete(node.right, key));
+		}
+		if (node.left == null)
+		{
+			return node.right;
+		}
+		if (node.right == null)
+		{
+			return node.left;
+		}
+
+		Node successor = node.right;
+		while (successor.left != null)
+		{
+			successor = successor.left;
+		}
+		return balance(successor.key, successor.entry, node.left, delete(node.right, successor.key));
+	}
+
+	private static Node balance(long key, Entry entry, Node left, Node right)
+	{
+		int difference = height(left) - height(right);
+		if (difference > 1)
+		{
+			if (height(left.left) >= height(left.right))
+			{
+				return new Node(left.key, left.entry, left.left, new Node(key, entry, left.right, right));
+			}
+			Node pivot = left.right;
+			return new Node(pivot.key, pivot.entry, new Node(left.key, left.entry, left.left, pivot.left), new Node(key, entry, pivot.right, right));
+		}
+		if (difference < -1)
+		{
+			if (height(right.right) >= height(right.left))
+			{
+				return new Node(right.key, right.entry, new Node(key, entry, left, right.left), right.right);
+			}
+			Node pivot = right.left;
+			return new Node(pivot.key, pivot.entry, new Node(key, entry, left, pivot.left), new Node(right.key, right.entry, pivot.right, right.right));
+		}
+		return new Node(key, entry, left, right);
+	}
+
+	/**
+	 * in order traversal with an explicit stack
+	 */
+	private static class EntryIterator implements Iterator<Entry>
+	{
+
+		private final Deque<Node> stack = new ArrayDeque<>();
+
+		EntryIterator(Node root)
+		{
+			pushLeft(root);
+		}
+
+		private void pushLeft(Node node)
+		{
+			while (node != null)
+			{
+				stack.push(node);
+				node = node.left;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return !stack.isEmpty();
+		}
+
+		@Override
+		public Entry next()
+		{
+			if (stack.isEmpty())
+			{
+				throw new NoSuchElementException();
+			}
+			Node node = stack.pop();
+			pushLeft(node.right);
+			return node.entry;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.explicatis.ext_token_field.shared.DropTargetType;
+import com.explicatis.ext_token_field.shared.Token;
+
+/**
+ * Ordered store of the tokens of one {@link ExtTokenField}.
+ *
+ * Every entry is indexed by its identifier and carries a sparse position key. The order of the tokens is the order of
+ * the position keys, so lookups are O(1) and inserts, removals and moves are O(log n). Position keys are spaced by
+ * {@link #POSITION_GAP}, a move picks the middle of the gap next to its target. Only if a gap is used up, all keys are
+ * renumbered.
+ *
+ * The order is kept in a persistent {@link TokenSequence}, so a snapshot of the tokenizables is O(1) and shares its
+ * structure with the previous and following snapshots.
+ */
+class TokenStore implements Serializable
+{
+
+	static final long						POSITION_GAP	= 1L << 16;
+
+	private final LongObjectMap<Entry>		entries			= new LongObjectMap<>();
+	private TokenSequence					sequence		= TokenSequence.EMPTY;
+
+	static class Entry implements Serializable
+	{
+
+		final Tokenizable	tokenizable;
+		final Token			token;
+		long				position;
+
+		Entry(Tokenizable tokenizable, Token token)
+		{
+			this.tokenizable = tokenizable;
+			this.token = token;
+		}
+	}
+
+	public int size()
+	{
+		return entries.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return entries.isEmpty();
+	}
+
+	public boolean contains(long identifier)
+	{
+		return entries.containsKey(identifier);
+	}
+
+	/**
+	 * @return the tokenizable with the given identifier or null, if there is none
+	 */
+	public Tokenizable getTokenizable(long identifier)
+	{
+		Entry entry = entries.get(identifier);
+		return entry != null ? entry.tokenizable : null;
+	}
+
+	/**
+	 * @return the token with the given identifier or null, if there is none
+	 */
+	public Token getToken(long identifier)
+	{
+		Entry entry = entries.get(identifier);
+		return entry != null ? entry.token : null;
+	}
+
+	/**
+	 * @return the identifier of the entry following the given one or null, if it is the last one
+	 */
+	public Long getNextIdentifier(long identifier)
+	{
+		Long next = sequence.higherKey(getEntry(identifier).position);
+		return next != null ? sequence.getEntryAt(next).tokenizable.getIdentifier() : null;
+	}
+
+	/**
+	 * appends the tokenizable and its token after the last entry
+	 */
+	public void add(Tokenizable tokenizable, Token token)
+	{
+		Entry entry = new Entry(tokenizable, token);
+		entries.put(tokenizable.getIdentifier(), entry);
+		append(entry);
+	}
+
+	/**
+	 * inserts the tokenizable and its token before the entry with the given identifier or appends them, if it is null
+	 */
+	public void add(Tokenizable tokenizable, Token token, Long beforeIdentifier)
+	{
+		if (beforeIdentifier == null)
+		{
+			add(tokenizable, token);
+			return;
+		}
+
+		Entry target = getEntry(beforeIdentifier);
+		Entry entry = new Entry(tokenizable, token);
+		entries.put(tokenizable.getIdentifier(), entry);
+		place(entry, target, DropTargetType.BEFORE);
+	}
+
+	/**
+	 * replaces the tokenizable and token of an entry, keeping its position
+	 */
+	public void replace(Tokenizable tokenizable, Token token)
+	{
+		Entry entry = new Entry(tokenizable, token);
+		entry.position = getEntry(tokenizable.getIdentifier()).position;
+		entries.put(tokenizable.getIdentifier(), entry);
+		sequence = sequence.with(entry);
+	}
+
+	/**
+	 * @return the removed tokenizable or null, if there was none with the given identifier
+	 */
+	public Tokenizable remove(long identifier)
+	{
+		Entry entry = entries.remove(identifier);
+		if (entry == null)
+		{
+			return null;
+		}
+		sequence = sequence.without(entry.position);
+		return entry.tokenizable;
+	}
+
+	/**
+	 * moves the source entry directly before or after the target entry
+	 */
+	public void move(long sourceIdentifier, long targetIdentifier, DropTargetType type)
+	{
+		Entry source = getEntry(sourceIdentifier);
+		Entry target = getEntry(targetIdentifier);
+
+		if (source == target)
+		{
+			return;
+		}
+
+		sequence = sequence.without(source.position);
+		place(source, target, type);
+	}
+
+	/**
+	 * moves the entry before the entry with the given identifier or to the end, if it is null
+	 */
+	public void moveBefore(long identifier, Long beforeIdentifier)
+	{
+		if (beforeIdentifier != null)
+		{
+			move(identifier, beforeIdentifier, DropTargetType.BEFORE);
+			return;
+		}
+
+		Entry entry = getEntry(identifier);
+		sequence = sequence.without(entry.position);
+		append(entry);
+	}
+
+	private void append(Entry entry)
+	{
+		entry.position = sequence.isEmpty() ? 0 : sequence.lastKey() + POSITION_GAP;
+		sequence = sequence.with(entry);
+	}
+
+	/**
+	 * puts the entry, which is not part of the sequence, directly before or after the target entry
+	 */
+	private void place(Entry source, Entry target, DropTargetType type)
+	{
+		Long neighbour = DropTargetType.BEFORE.equals(type) ? sequence.lowerKey(target.position) : sequence.higherKey(target.position);
+		if (!hasGap(target.position, neighbour))
+		{
+			renumber();
+			neighbour = DropTargetType.BEFORE.equals(type) ? sequence.lowerKey(target.position) : sequence.higherKey(target.position);
+		}
+
+		if (neighbour == null)
+		{
+			source.position = DropTargetType.BEFORE.equals(type) ? target.position - POSITION_GAP : target.position + POSITION_GAP;
+		}
+		else
+		{
+			source.position = target.position + (neighbour - target.position) / 2;
+		}
+		sequence = sequence.with(source);
+	}
+
+	public void clear()
+	{
+		entries.clear();
+		sequence = TokenSequence.EMPTY;
+	}
+
+	/**
+	 * @return an immutable snapshot of all tokenizables in order, later changes of the store do not affect it
+	 */
+	public List<Tokenizable> getTokenizables()
+	{
+		return sequence;
+	}
+
+	/**
+	 * @return a new list of all tokens in order
+	 */
+	public List<Token> getTokens()
+	{
+		List<Token> result = new ArrayList<>(sequence.size());
+		for (Entry entry : sequence.entries())
+		{
+			result.add(entry.token);
+		}
+		return result;
+	}
+
+	private Entry getEntry(long identifier)
+	{
+		Entry entry = entries.get(identifier);
+		if (entry == null)
+		{
+			throw new NoSuchElementException(String.format("token with identifier %d could not be found", identifier));
+		}
+		return entry;
+	}
+
+	private static boolean hasGap(long position, Long neighbour)
+	{
+		return neighbour == null || Math.abs(neighbour - position) > 1;
+	}
+
+	private void renumber()
+	{
+		List<Entry> ordered = new ArrayList<>(sequence.size());
+		long position = 0;
+		for (Entry entry : sequence.entries())
+		{
+			entry.position = position;
+			ordered.add(entry);
+			position += POSITION_GAP;
+		}
+		sequence = TokenSequence.of(ordered);
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.vaadin.server.SerializableFunction;
+
+/**
+ * Resolves strings entered by the user, e.g. pasted codes, imported or passed as URL parameters, into tokenizables.
+ * Values are passed in batches, so a resolver can look up all of them with one query. A
+ * {@link ParallelTokenizableResolver} splits large batches and resolves them in parallel.
+ */
+@FunctionalInterface
+public interface TokenizableResolver extends Serializable
+{
+
+	/**
+	 * @return the tokenizables of the resolved values by value, values which cannot be resolved are missing
+	 */
+	Map<String, ? extends Tokenizable> resolve(Collection<String> values);
+
+	/**
+	 * resolves the values in the background, by default by {@link #resolve(Collection)} on the executor. As lookups
+	 * usually block, it should be dedicated to them instead of a shared pool.
+	 */
+	default CompletableFuture<Map<String, ? extends Tokenizable>> resolveAsync(Collection<String> values, Executor executor)
+	{
+		return CompletableFuture.supplyAsync(() -> resolve(values), executor);
+	}
+
+	/**
+	 * a resolver, which resolves one value after the other by the given function, it returns null for unresolved
+	 * values
+	 */
+	static TokenizableResolver of(SerializableFunction<String, ? extends Tokenizable> function)
+	{
+		return values -> {
+			Map<String, Tokenizable> result = new HashMap<>();
+			for (String value : values)
+			{
+				Tokenizable tokenizable = function.apply(value);
+				if (tokenizable != null)
+				{
+					result.put(value, tokenizable);
+				}
+			}
+			return result;
+		};
+	}
+}
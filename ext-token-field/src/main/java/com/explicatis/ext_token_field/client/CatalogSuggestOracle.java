@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.explicatis.ext_token_field.shared.Token;
+import com.explicatis.ext_token_field.shared.TokenColumns;
+import com.google.gwt.user.client.ui.SuggestOracle;
+
+/**
+ * Suggests the tokens of a catalog shipped by the server, without a server round trip per typed char.
+ *
+ * A token matches, if its value or one of its words starts with the typed text, ignoring case. Matches at the start
+ * of the value come first, then shorter values before longer ones and then the order of the catalog. The catalog is
+ * scanned once per query and only the best matches are kept, the lower case values are created on the first query.
+ */
+public class CatalogSuggestOracle extends SuggestOracle
+{
+
+	private final Predicate<Long>	excluded;
+	private TokenColumns			catalog;
+	private String[]				lowerCaseValues;
+
+	/**
+	 * @param excluded
+	 *            tests, whether the token with the given id must not be suggested, e.g. because it is already selected
+	 */
+	public CatalogSuggestOracle(Predicate<Long> excluded)
+	{
+		this.excluded = excluded;
+	}
+
+	public TokenColumns getCatalog()
+	{
+		return catalog;
+	}
+
+	/**
+	 * replaces the catalog, nothing is suggested while it is null
+	 */
+	public void setCatalog(TokenColumns catalog)
+	{
+		this.catalog = catalog;
+		this.lowerCaseValues = null;
+	}
+
+	@Override
+	public void requestSuggestions(Request request, Callback callback)
+	{
+		List<Suggestion> suggestions = new ArrayList<>();
+		for (Token token : suggest(request.getQuery(), request.getLimit()))
+		{
+			suggestions.add(new TokenSuggestion(token));
+		}
+		callback.onSuggestionsReady(request, new Response(suggestions));
+	}
+
+	@Override
+	public boolean isDisplayStringHTML()
+	{
+		return false;
+	}
+
+	public List<Token> suggest(String query, int limit)
+	{
+		String filter = query != null ? query.trim().toLowerCase() : "";
+		List<Token> result = new ArrayList<>();
+		if (catalog == null || filter.isEmpty() || limit <= 0)
+		{
+			return result;
+		}
+
+		String[] values = getLowerCaseValues();
+		int[] selected = new int[limit];
+		int[] selectedRanks = new int[limit];
+		int size = 0;
+		for (int i = 0; i < values.length; i++)
+		{
+			int rank = rank(values[i], filter);
+			if (rank < 0 || size == limit && rank >= selectedRanks[size - 1] || excluded.test(catalog.getId(i)))
+			{
+				continue;
+			}
+
+			// insertion into the few selected matches, equal ranks stay in catalog order
+			int position = size < limit ? size++ : size - 1;
+			while (position > 0 && selectedRanks[position - 1] > rank)
+			{
+				selected[position] = selected[position - 1];
+				selectedRanks[position] = selectedRanks[position - 1];
+				position--;
+			}
+			selected[position] = i;
+			selectedRanks[position] = rank;
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			result.add(catalog.toToken(selected[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the length of the value, plus a large offset for a match of a later word, or -1 if it does not match
+	 */
+	private static int rank(String value, String filter)
+	{
+		if (value.startsWith(filter))
+		{
+			return value.length();
+		}
+		for (int i = value.indexOf(filter, 1); i > 0; i = value.indexOf(filter, i + 1))
+		{
+			if (Character.isLetterOrDigit(value.charAt(i)) && !Character.isLetterOrDigit(value.charAt(i - 1)))
+			{
+				return Integer.MAX_VALUE / 2 + Math.min(value.length(), Integer.MAX_VALUE / 2 - 1);
+			}
+		}
+		return -1;
+	}
+
+	private String[] getLowerCaseValues()
+	{
+		if (lowerCaseValues == null)
+		{
+			lowerCaseValues = new String[catalog.size()];
+			for (int i = 0; i < lowerCaseValues.length; i++)
+			{
+				lowerCaseValues[i] = catalog.getValue(i).toLowerCase();
+			}
+		}
+		return lowerCaseValues;
+	}
+
+	public static class TokenSuggestion implements Suggestion
+	{
+
+		private final Token	token;
+
+		public TokenSuggestion(Token token)
+		{
+			this.token = token;
+		}
+
+		public Token getToken()
+		{
+			return token;
+		}
+
+		@Override
+		public String getDisplayString()
+		{
+			return token.value;
+		}
+
+		/**
+		 * the input is cleared, the chosen token is added to the field instead
+		 */
+		@Override
+		public String getReplacementString()
+		{
+			return "";
+		}
+	}
+}
@@ -18,26 +18,45 @@
 
 package com.explicatis.ext_token_field.client;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
 
 import com.explicatis.ext_token_field.shared.DropTargetType;
 import com.explicatis.ext_token_field.shared.ExtTokenFieldServerRpc;
+import com.explicatis.ext_token_field.shared.IncreasingSubsequence;
 import com.explicatis.ext_token_field.shared.Token;
+import com.explicatis.ext_token_field.shared.TokenColumns;
+import com.explicatis.ext_token_field.shared.TokenInteraction;
 import com.explicatis.ext_token_field.shared.TokenAction;
+import com.explicatis.ext_token_field.shared.TokenOperation;
+import com.google.gwt.animation.client.AnimationScheduler;
 import com.google.gwt.core.client.Scheduler;
-import com.google.gwt.dom.client.Node;
-import com.google.gwt.dom.client.NodeList;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.DragStartEvent;
 import com.google.gwt.event.dom.client.KeyCodes;
+import com.google.gwt.event.dom.client.KeyDownEvent;
 import com.google.gwt.event.dom.client.KeyDownHandler;
-import com.google.gwt.user.client.ui.Anchor;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.user.client.DOM;
+import com.google.gwt.user.client.Event;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.HasEnabled;
+import com.google.gwt.user.client.ui.SimplePanel;
+import com.google.gwt.user.client.ui.SuggestBox;
+import com.google.gwt.user.client.ui.SuggestBox.DefaultSuggestionDisplay;
 import com.vaadin.client.ApplicationConnection;
 import com.vaadin.client.ComponentConnector;
 import com.vaadin.client.ui.Icon;
@@ -51,111 +70,928 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 {
 
 	public static final String			TOKEN_FIELD_CLASS_NAME	= "exttokenfield";
+	public static final String			VIRTUAL_CLASS_NAME		= "virtual";
+	public static final String			SPACER_CLASS_NAME		= "token-spacer";
+	public static final String			SUGGESTIONS_CLASS_NAME	= "exttokenfield-suggestions";
 
-	private List<TokenWidget>			tokenWidgets			= new LinkedList<TokenWidget>();
+	private static final Logger			LOGGER					= Logger.getLogger(ExtTokenFieldWidget.class.getName());
+	private static final int			VIRTUAL_BUFFER_ROWS		= 3;
+	private static final int			LAZY_PAGE_SIZE			= 100;
+	private static final String			FOCUS_IN_EVENT			= "focusin";
+	private static final String			FOCUS_OUT_EVENT			= "focusout";
+
+	/**
+	 * all tokens of the field, in virtual rendering mode only a window of them is rendered, in lazy mode not yet
+	 * loaded tokens are null
+	 */
+	private TokenIndex					tokens						= new TokenIndex();
+	/**
+	 * rendered token widgets in order
+	 */
+	private List<TokenWidget>			tokenWidgets				= new ArrayList<TokenWidget>();
+	/**
+	 * rendered token widgets by their token id
+	 */
+	private Map<Long, TokenWidget>		tokenWidgetsById			= new HashMap<Long, TokenWidget>();
+	private boolean						isLazy						= false;
+	private Set<Integer>				requestedPages				= new HashSet<Integer>();
+	private int							pendingFocusIndex			= -1;
 	private ExtTokenFieldServerRpc		serverRpc;
+	private TokenInteractionQueue		tokenInteractionQueue;
 	private VComboBox					inputFilterSelect;
 	private VButton						inputButton;
+	private SuggestBox					suggestBox;
+	private CatalogSuggestOracle		suggestOracle				= new CatalogSuggestOracle(id -> tokens.indexOf(id) >= 0);
+	private int							clientSuggestionLimit		= 10;
+	private PasteInput					pasteInput;
+	private String						pasteDelimiters;
+	private int							pasteBatchSize;
+	private int							pasteMaxValues;
+	private String						pasteProgressText;
+	private String						pasteUnresolvedText;
+	private String						pasteLimitText;
 	private Token						tokenToTheRight;
 	private List<TokenAction>			tokenActions;
 	private Map<TokenAction, String>	icons;
 	private ApplicationConnection		applicationConnection;
-	private boolean						isReadOnly				= false;
-	private boolean						isEnabled				= true;
-	private boolean						tokenDragAndDropEnabled	= false;
-	private int							tokenCount				= 0;
+	private boolean						isReadOnly					= false;
+	private boolean						isEnabled					= true;
+	private boolean						tokenDragAndDropEnabled		= false;
+	private boolean						virtualRenderingEnabled		= false;
+	private boolean						optimisticUpdatesEnabled	= false;
+	private int							tokenCount					= 0;
+	private TokenDropZone				dropZone;
+	private SimplePanel					topSpacer;
+	private SimplePanel					bottomSpacer;
+	private List<TokenWidget>			recycledTokenWidgets		= new ArrayList<TokenWidget>();
+	private int							rowHeight					= 36;
+	private int							tokensPerRow				= 5;
+	private boolean						isRenderScheduled			= false;
+	private int							createdWidgetCount			= 0;
+	private int							destroyedWidgetCount		= 0;
+
+	public ExtTokenFieldWidget()
+	{
+		getElement().setClassName(TOKEN_FIELD_CLASS_NAME);
+		dropZone = new TokenDropZone(this);
+		initTokenEventDelegation();
+		addDomHandler(event -> {
+			dropZone.invalidate();
+			scheduleRenderVisibleTokens();
+		}, ScrollEvent.getType());
+	}
+
+	public void setApplicationConnection(ApplicationConnection applicationConnection)
+	{
+		this.applicationConnection = applicationConnection;
+	}
+
+	public void setIconResourceUrl(TokenAction tokenAction, String url)
+	{
+		if (icons == null)
+		{
+			icons = new HashMap<>();
+		}
+		icons.put(tokenAction, url);
+	}
+
+	public void setTokenActions(Set<TokenAction> tokenActions)
+	{
+		List<TokenAction> sortedList = new LinkedList<>(tokenActions);
+		Collections.sort(sortedList);
+		this.tokenActions = sortedList;
+	}
+
+	public void setInputButton(Connector inputButton)
+	{
+		if (inputButton != null)
+		{
+			this.inputButton = (VButton) ((ComponentConnector) inputButton).getWidget();
+			this.inputButton.addKeyDownHandler(initKeyDownHandler());
+			add(this.inputButton);
+		}
+		else if (this.inputButton != null)
+		{
+			remove(this.inputButton);
+			this.inputButton = null;
+		}
+	}
+
+	public boolean getTokenDragAndDropEnabled()
+	{
+		return this.tokenDragAndDropEnabled;
+	}
+
+	public void setTokenDragAndDropEnabled(boolean value)
+	{
+		this.tokenDragAndDropEnabled = value;
+	}
+
+	public boolean getVirtualRenderingEnabled()
+	{
+		return this.virtualRenderingEnabled;
+	}
+
+	/**
+	 * In virtual rendering mode only the tokens in the visible part of the scrollable field plus some buffer rows are
+	 * rendered. Spacers above and below the rendered tokens keep the scroll height.
+	 */
+	public void setVirtualRenderingEnabled(boolean value)
+	{
+		if (this.virtualRenderingEnabled == value)
+		{
+			return;
+		}
+
+		removeAllTokens();
+		recycledTokenWidgets.clear();
+		this.virtualRenderingEnabled = value;
+
+		if (value)
+		{
+			addStyleName(VIRTUAL_CLASS_NAME);
+			topSpacer = buildSpacer();
+			bottomSpacer = buildSpacer();
+			insert(topSpacer, 0);
+			insert(bottomSpacer, 1);
+		}
+		else
+		{
+			removeStyleName(VIRTUAL_CLASS_NAME);
+			remove(topSpacer);
+			remove(bottomSpacer);
+			topSpacer = null;
+			bottomSpacer = null;
+		}
+
+		renderTokens();
+	}
+
+	@Override
+	protected void onLoad()
+	{
+		super.onLoad();
+		scheduleRenderVisibleTokens();
+	}
+
+	private static SimplePanel buildSpacer()
+	{
+		SimplePanel result = new SimplePanel();
+		result.getElement().setClassName(SPACER_CLASS_NAME);
+		return result;
+	}
+
+	public void setInputField(Connector inputField)
+	{
+		if (inputField != null)
+		{
+			inputFilterSelect = (VComboBox) ((ComponentConnector) inputField).getWidget();
+			/**
+			 * add key down handler, to select the token at the very left of the filter select when left key was pressed
+			 * 
+			 * TODO: more work to do... make sure suggestion box is closed etc.
+			 */
+			inputFilterSelect.tb.addKeyDownHandler(initKeyDownHandler());
+			add(inputFilterSelect);
+		}
+		else if (inputFilterSelect != null)
+		{
+			remove(inputFilterSelect);
+			inputFilterSelect = null;
+		}
+	}
+
+	/**
+	 * In client side suggestion mode the input is a suggest box, which filters the catalog sent by
+	 * {@link #setSuggestionCatalog(int, TokenColumns)} in the browser. Only the chosen token is sent to the server.
+	 */
+	public void setClientSuggestionsEnabled(boolean value)
+	{
+		if (value && suggestBox == null)
+		{
+			suggestBox = new SuggestBox(suggestOracle);
+			suggestBox.setLimit(clientSuggestionLimit);
+			suggestBox.setAutoSelectEnabled(true);
+			((DefaultSuggestionDisplay) suggestBox.getSuggestionDisplay()).setPopupStyleName(SUGGESTIONS_CLASS_NAME);
+			suggestBox.getValueBox().addKeyDownHandler(initKeyDownHandler());
+			suggestBox.addSelectionHandler(event -> suggestionChosen(((CatalogSuggestOracle.TokenSuggestion) event.getSelectedItem()).getToken()));
+			updateInputVisibility();
+			add(suggestBox);
+		}
+		else if (!value && suggestBox != null)
+		{
+			remove(suggestBox);
+			suggestBox = null;
+			suggestOracle.setCatalog(null);
+		}
+	}
+
+	public void setClientSuggestionLimit(int limit)
+	{
+		this.clientSuggestionLimit = limit;
+		if (suggestBox != null)
+		{
+			suggestBox.setLimit(limit);
+		}
+	}
+
+	/**
+	 * replaces the catalog of the client side suggestions, the lower case values are only created on the next query
+	 */
+	public void setSuggestionCatalog(int version, TokenColumns catalog)
+	{
+		suggestOracle.setCatalog(catalog);
+		LOGGER.fine("suggestion catalog " + version + ": " + catalog.size() + " tokens");
+	}
+
+	/**
+	 * In paste input mode the input is a text box, into which values separated by delimiters are pasted or typed. They
+	 * are resolved into tokens by the server.
+	 */
+	public void setPasteInputEnabled(boolean value)
+	{
+		if (value && pasteInput == null)
+		{
+			pasteInput = new PasteInput(serverRpc);
+			if (pasteDelimiters != null)
+			{
+				pasteInput.setDelimiters(pasteDelimiters);
+			}
+			if (pasteBatchSize > 0)
+			{
+				pasteInput.setBatchSize(pasteBatchSize);
+			}
+			if (pasteMaxValues > 0)
+			{
+				pasteInput.setMaxValues(pasteMaxValues);
+			}
+			if (pasteProgressText != null)
+			{
+				pasteInput.setProgressText(pasteProgressText);
+			}
+			if (pasteUnresolvedText != null)
+			{
+				pasteInput.setUnresolvedText(pasteUnresolvedText);
+			}
+			if (pasteLimitText != null)
+			{
+				pasteInput.setLimitText(pasteLimitText);
+			}
+			pasteInput.getTextBox().addKeyDownHandler(initKeyDownHandler());
+			updateInputVisibility();
+			add(pasteInput);
+		}
+		else if (!value && pasteInput != null)
+		{
+			remove(pasteInput);
+			pasteInput = null;
+		}
+	}
+
+	public void setPasteDelimiters(String delimiters)
+	{
+		this.pasteDelimiters = delimiters;
+		if (pasteInput != null)
+		{
+			pasteInput.setDelimiters(delimiters);
+		}
+	}
+
+	public void setPasteBatchSize(int batchSize)
+	{
+		this.pasteBatchSize = batchSize;
+		if (pasteInput != null)
+		{
+			pasteInput.setBatchSize(batchSize);
+		}
+	}
+
+	public void setPasteMaxValues(int maxValues)
+	{
+		this.pasteMaxValues = maxValues;
+		if (pasteInput != null)
+		{
+			pasteInput.setMaxValues(maxValues);
+		}
+	}
+
+	public void setPasteProgressText(String text)
+	{
+		this.pasteProgressText = text;
+		if (pasteInput != null)
+		{
+			pasteInput.setProgressText(text);
+		}
+	}
+
+	public void setPasteUnresolvedText(String text)
+	{
+		this.pasteUnresolvedText = text;
+		if (pasteInput != null)
+		{
+			pasteInput.setUnresolvedText(text);
+		}
+	}
+
+	public void setPasteLimitText(String text)
+	{
+		this.pasteLimitText = text;
+		if (pasteInput != null)
+		{
+			pasteInput.setLimitText(text);
+		}
+	}
+
+	public void pastedValuesResolved(int pasteId, int resolvedCount, List<String> unresolvedValues)
+	{
+		if (pasteInput != null)
+		{
+			pasteInput.batchResolved(pasteId, resolvedCount, unresolvedValues);
+		}
+	}
+
+	/**
+	 * the inputs managed by the widget itself are hidden, while the field is read only or disabled
+	 */
+	private void updateInputVisibility()
+	{
+		if (suggestBox != null)
+		{
+			suggestBox.setVisible(isEnabled && !isReadOnly);
+		}
+		if (pasteInput != null)
+		{
+			pasteInput.setVisible(isEnabled && !isReadOnly);
+		}
+	}
+
+	private KeyDownHandler initKeyDownHandler()
+	{
+		return event -> {
+			if (event.getNativeKeyCode() == KeyCode.LEFT)
+			{
+				if (ExtTokenFieldWidget.this.tokens.size() > 0)
+				{
+					focusToken(tokens.size() - 1);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Replaces all tokens. The token widgets are reconciled with the given tokens by their id, existing widgets are
+	 * reused and only moved, if their position changed. Only widgets of added tokens are created and only widgets of
+	 * removed tokens are destroyed.
+	 */
+	public void updateTokens(List<Token> tokens)
+	{
+		resetTokenWidgetCounts();
+
+		this.isLazy = false;
+		this.tokens.reset(tokens);
+		renderTokens();
+
+		tokensChanged();
+		logTokenWidgetCounts("updateTokens");
+	}
+
+	/**
+	 * Replaces all tokens by the encoded ones like {@link #updateTokens(List)}. Tokens are only created, when they are
+	 * rendered or otherwise accessed.
+	 */
+	public void updateTokens(TokenColumns columns)
+	{
+		resetTokenWidgetCounts();
+
+		this.isLazy = false;
+		this.tokens.reset(columns);
+		renderTokens();
+
+		tokensChanged();
+		logTokenWidgetCounts("updateTokens");
+	}
+
+	/**
+	 * rebuilds the current tokens, e.g. after token actions, read only or enabled changed
+	 */
+	public void refreshTokens()
+	{
+		resetTokenWidgetCounts();
+
+		removeAllTokens();
+		recycledTokenWidgets.clear();
+		renderTokens();
+
+		tokensChanged();
+		logTokenWidgetCounts("refreshTokens");
+	}
+
+	public List<Token> getTokens()
+	{
+		return tokens.asList();
+	}
+
+	/**
+	 * @return the rendered token widgets in order
+	 */
+	public List<TokenWidget> getTokenWidgets()
+	{
+		return Collections.unmodifiableList(tokenWidgets);
+	}
+
+	/**
+	 * lazy mode: replaces all tokens by the given count of not yet loaded tokens
+	 */
+	public void resetTokens(int size)
+	{
+		resetTokenWidgetCounts();
+
+		isLazy = true;
+		requestedPages.clear();
+		pendingFocusIndex = -1;
+		tokens.reset(size);
+		renderTokens();
+
+		tokensChanged();
+		logTokenWidgetCounts("resetTokens");
+	}
+
+	/**
+	 * lazy mode: sets the loaded tokens starting at offset and renders them, if they are visible
+	 */
+	public void setTokenPage(int offset, List<Token> page)
+	{
+		resetTokenWidgetCounts();
+
+		for (int i = 0; i < page.size() && offset + i < tokens.size(); i++)
+		{
+			tokens.set(offset + i, page.get(i));
+		}
+		renderTokens();
+
+		if (pendingFocusIndex >= offset && pendingFocusIndex < offset + page.size())
+		{
+			int index = pendingFocusIndex;
+			pendingFocusIndex = -1;
+			focusToken(index);
+		}
+
+		logTokenWidgetCounts("setTokenPage");
+	}
+
+	/**
+	 * lazy mode: requests the pages of not yet loaded tokens in the given range, every page only once
+	 */
+	private void requestMissingTokens(int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			int page = i / LAZY_PAGE_SIZE;
+			if (tokens.get(i) == null && !requestedPages.contains(page))
+			{
+				requestedPages.add(page);
+				serverRpc.requestTokens(page * LAZY_PAGE_SIZE, LAZY_PAGE_SIZE);
+			}
+		}
+	}
+
+	/**
+	 * renders all tokens or in virtual rendering mode the visible ones
+	 */
+	private void renderTokens()
+	{
+		if (virtualRenderingEnabled)
+		{
+			renderVisibleTokens();
+			// render again with the estimates of the tokens rendered now
+			scheduleRenderVisibleTokens();
+		}
+		else
+		{
+			if (isLazy)
+			{
+				requestMissingTokens(0, tokens.size());
+			}
+			reconcileTokenWidgets(tokens.asList());
+		}
+	}
+
+	/**
+	 * Binds the widgets to the tokens by their id. Only widgets, which are not part of the longest subsequence already
+	 * in the new order, are moved, so moving one token relocates one widget.
+	 */
+	private void reconcileTokenWidgets(List<Token> renderedTokens)
+	{
+		Map<Long, TokenWidget> existingWidgets = new HashMap<>();
+		Map<TokenWidget, Integer> existingIndexes = new HashMap<>();
+		for (int i = 0; i < tokenWidgets.size(); i++)
+		{
+			TokenWidget t = tokenWidgets.get(i);
+			existingWidgets.put(t.getToken().id, t);
+			existingIndexes.put(t, i);
+		}
+
+		List<TokenWidget> newWidgets = new ArrayList<>(renderedTokens.size());
+		List<Token> missingTokens = new ArrayList<>();
+		int[] keptIndexes = new int[Math.min(renderedTokens.size(), tokenWidgets.size())];
+		int keptCount = 0;
+		for (Token token : renderedTokens)
+		{
+			if (token == null)
+			{
+				continue;
+			}
+
+			TokenWidget widget = existingWidgets.remove(token.id);
+			if (widget == null)
+			{
+				missingTokens.add(token);
+			}
+			else
+			{
+				if (widget.getToken() != token || !Objects.equals(widget.getToken().value, token.value))
+				{
+					widget.setToken(token);
+				}
+				keptIndexes[keptCount++] = existingIndexes.get(widget);
+			}
+			newWidgets.add(widget);
+		}
+
+		Set<TokenWidget> stableWidgets = new HashSet<>();
+		for (int stableIndex : IncreasingSubsequence.longest(Arrays.copyOf(keptIndexes, keptCount)))
+		{
+			stableWidgets.add(tokenWidgets.get(stableIndex));
+		}
+
+		// detaches the widgets of removed tokens and the ones to be moved in one pass, at most a window of the removed
+		// ones is kept for recycling
+		int stableCount = 0;
+		for (int i = 0; i < tokenWidgets.size(); i++)
+		{
+			TokenWidget widget = tokenWidgets.get(i);
+			if (stableWidgets.contains(widget))
+			{
+				tokenWidgets.set(stableCount++, widget);
+				continue;
+			}
+
+			tokenWidgetsById.remove(widget.getToken().id);
+			remove(widget);
+			if (existingWidgets.containsKey(widget.getToken().id))
+			{
+				if (virtualRenderingEnabled && recycledTokenWidgets.size() < renderedTokens.size())
+				{
+					recycledTokenWidgets.add(widget);
+				}
+				else
+				{
+					destroyedWidgetCount++;
+				}
+			}
+		}
+		tokenWidgets.subList(stableCount, tokenWidgets.size()).clear();
+
+		// only the stable widgets are left in order, the others are inserted from the front, so all before them are
+		// in place
+		int missingIndex = 0;
+		for (int i = 0; i < newWidgets.size(); i++)
+		{
+			TokenWidget widget = newWidgets.get(i);
+			if (widget == null)
+			{
+				insertTokenWidget(obtainTokenWidget(missingTokens.get(missingIndex++)), i);
+			}
+			else if (!stableWidgets.contains(widget))
+			{
+				insertTokenWidget(widget, i);
+			}
+		}
+
+		dropZone.invalidate();
+	}
+
+	/**
+	 * @return a recycled token widget bound to the token or a new one, if none is left
+	 */
+	private TokenWidget obtainTokenWidget(Token token)
+	{
+		if (recycledTokenWidgets.isEmpty())
+		{
+			return createTokenWidget(token);
+		}
+
+		TokenWidget widget = recycledTokenWidgets.remove(recycledTokenWidgets.size() - 1);
+		widget.setToken(token);
+		return widget;
+	}
+
+	private void scheduleRenderVisibleTokens()
+	{
+		if (virtualRenderingEnabled && !isRenderScheduled)
+		{
+			isRenderScheduled = true;
+			AnimationScheduler.get().requestAnimationFrame(timestamp -> {
+				isRenderScheduled = false;
+				renderVisibleTokens();
+			});
+		}
+	}
+
+	/**
+	 * Renders the tokens of the rows in the visible part of the field plus {@link #VIRTUAL_BUFFER_ROWS} rows above and
+	 * below. Row height and tokens per row are estimated from the currently rendered tokens.
+	 */
+	private void renderVisibleTokens()
+	{
+		measureRenderedTokens();
+
+		int firstVisibleRow = getElement().getScrollTop() / rowHeight;
+		int visibleRows = getElement().getClientHeight() / rowHeight + 1;
+
+		int start = Math.min(tokens.size(), Math.max(0, (firstVisibleRow - VIRTUAL_BUFFER_ROWS) * tokensPerRow));
+		int end = Math.min(tokens.size(), Math.max(start, (firstVisibleRow + visibleRows + VIRTUAL_BUFFER_ROWS) * tokensPerRow));
+		renderRange(start, end);
+	}
+
+	private void renderRange(int start, int end)
+	{
+		if (isLazy)
+		{
+			requestMissingTokens(start, end);
+		}
+		reconcileTokenWidgets(tokens.asList().subList(start, end));
+
+		int rowsAbove = start / tokensPerRow;
+		int rowsBelow = (tokens.size() - end + tokensPerRow - 1) / tokensPerRow;
+		topSpacer.getElement().getStyle().setHeight(rowsAbove * rowHeight, Unit.PX);
+		bottomSpacer.getElement().getStyle().setHeight(rowsBelow * rowHeight, Unit.PX);
+	}
+
+	private void measureRenderedTokens()
+	{
+		if (tokenWidgets.size() < 2)
+		{
+			return;
+		}
+
+		int firstTop = tokenWidgets.get(0).getElement().getOffsetTop();
+		int lastTop = firstTop;
+		int rows = 1;
+		for (TokenWidget t : tokenWidgets)
+		{
+			int top = t.getElement().getOffsetTop();
+			if (top > lastTop)
+			{
+				lastTop = top;
+				rows++;
+			}
+		}
+
+		if (rows > 1)
+		{
+			rowHeight = Math.max(1, (lastTop - firstTop) / (rows - 1));
+		}
+		tokensPerRow = Math.max(1, tokenWidgets.size() / rows);
+	}
+
+	/**
+	 * @return the widget of the token at the given index, in virtual rendering mode the token is scrolled into view
+	 *         and rendered first, if necessary. In lazy mode null is returned, while the token is loaded.
+	 */
+	protected TokenWidget ensureTokenRendered(int index)
+	{
+		if (index < 0 || index >= tokens.size())
+		{
+			return null;
+		}
+
+		TokenWidget result = tokens.get(index) != null ? findTokenWidgetById(tokens.get(index).id) : null;
+		if (result == null && virtualRenderingEnabled)
+		{
+			int row = index / tokensPerRow;
+			getElement().setScrollTop(Math.max(0, row * rowHeight - getElement().getClientHeight() / 2));
+			renderVisibleTokens();
+			result = tokens.get(index) != null ? findTokenWidgetById(tokens.get(index).id) : null;
+		}
+
+		if (result != null && virtualRenderingEnabled)
+		{
+			result.getElement().scrollIntoView();
+		}
+		return result;
+	}
+
+	private void focusToken(int index)
+	{
+		TokenWidget widget = ensureTokenRendered(index);
+		if (widget != null)
+		{
+			widget.setFocus(true);
+		}
+		else if (isLazy)
+		{
+			pendingFocusIndex = index;
+		}
+	}
 
-	public ExtTokenFieldWidget()
+	/**
+	 * @return the widget count created by the last update
+	 */
+	public int getCreatedTokenWidgetCount()
 	{
-		getElement().setClassName(TOKEN_FIELD_CLASS_NAME);
+		return createdWidgetCount;
 	}
 
-	public void setApplicationConnection(ApplicationConnection applicationConnection)
+	/**
+	 * @return the widget count destroyed by the last update
+	 */
+	public int getDestroyedTokenWidgetCount()
 	{
-		this.applicationConnection = applicationConnection;
+		return destroyedWidgetCount;
 	}
 
-	public void setIconResourceUrl(TokenAction tokenAction, String url)
+	private void resetTokenWidgetCounts()
 	{
-		if (icons == null)
-		{
-			icons = new HashMap<>();
-		}
-		icons.put(tokenAction, url);
+		createdWidgetCount = 0;
+		destroyedWidgetCount = 0;
 	}
 
-	public void setTokenActions(Set<TokenAction> tokenActions)
+	private void logTokenWidgetCounts(String update)
 	{
-		List<TokenAction> sortedList = new LinkedList<>(tokenActions);
-		Collections.sort(sortedList);
-		this.tokenActions = sortedList;
+		LOGGER.fine(update + ": " + createdWidgetCount + " token widgets created, " + destroyedWidgetCount + " destroyed");
 	}
 
-	public void setInputButton(Connector inputButton)
+	private TokenWidget createTokenWidget(Token token)
 	{
-		if (inputButton != null)
+		createdWidgetCount++;
+		return buildTokenWidget(token);
+	}
+
+	private void destroyTokenWidget(int index)
+	{
+		destroyedWidgetCount++;
+		detachTokenWidget(index);
+	}
+
+	/**
+	 * applies a delta of the server, only the affected token widgets are created, moved or removed
+	 */
+	public void applyTokenOperations(List<TokenOperation> operations)
+	{
+		resetTokenWidgetCounts();
+
+		for (TokenOperation operation : operations)
 		{
-			this.inputButton = (VButton) ((ComponentConnector) inputButton).getWidget();
-			this.inputButton.addKeyDownHandler(initKeyDownHandler());
-			add(this.inputButton);
+			switch (operation.type)
+			{
+				case INSERT:
+					insertToken(operation.toToken(), operation.beforeTokenId);
+					break;
+				case REMOVE:
+					removeToken(operation.tokenId);
+					break;
+				case MOVE:
+					moveToken(operation.tokenId, operation.beforeTokenId);
+					break;
+				case RELABEL:
+					relabelToken(operation.tokenId, operation.value);
+					break;
+			}
+		}
+
+		if (virtualRenderingEnabled)
+		{
+			renderVisibleTokens();
 		}
+		dropZone.invalidate();
+
+		tokensChanged();
+		logTokenWidgetCounts("applyTokenOperations");
 	}
 
-	public boolean getTokenDragAndDropEnabled()
+	/**
+	 * a token, which is already there, e.g. because it was added optimistically, is only relabeled
+	 */
+	protected void insertToken(Token token, Long beforeTokenId)
 	{
-		return this.tokenDragAndDropEnabled;
+		if (indexOfToken(token.id) >= 0)
+		{
+			relabelToken(token.id, token.value);
+			return;
+		}
+
+		int index = getInsertIndex(beforeTokenId);
+		tokens.add(index, token);
+
+		if (!virtualRenderingEnabled)
+		{
+			insertTokenWidget(createTokenWidget(token), index);
+		}
 	}
 
-	public void setTokenDragAndDropEnabled(boolean value)
+	protected void removeToken(long tokenId)
 	{
-		this.tokenDragAndDropEnabled = value;
+		int index = indexOfToken(tokenId);
+		if (index >= 0)
+		{
+			tokens.remove(index);
+
+			// without virtual rendering every token has a widget at the same index
+			if (!virtualRenderingEnabled)
+			{
+				destroyTokenWidget(index);
+			}
+		}
 	}
 
-	public void setInputField(Connector inputField)
+	protected void moveToken(long tokenId, Long beforeTokenId)
 	{
-		if (inputField != null)
+		int index = indexOfToken(tokenId);
+		if (index >= 0)
 		{
-			inputFilterSelect = (VComboBox) ((ComponentConnector) inputField).getWidget();
-			/**
-			 * add key down handler, to select the token at the very left of the filter select when left key was pressed
-			 * 
-			 * TODO: more work to do... make sure suggestion box is closed etc.
-			 */
-			inputFilterSelect.tb.addKeyDownHandler(initKeyDownHandler());
-			add(inputFilterSelect);
+			Token token = tokens.remove(index);
+			int newIndex = getInsertIndex(beforeTokenId);
+			tokens.add(newIndex, token);
+
+			if (!virtualRenderingEnabled)
+			{
+				insertTokenWidget(detachTokenWidget(index), newIndex);
+			}
 		}
 	}
 
-	private KeyDownHandler initKeyDownHandler()
+	protected void relabelToken(long tokenId, String value)
 	{
-		return event -> {
-			if (event.getNativeKeyCode() == KeyCode.LEFT)
+		TokenWidget widget = findTokenWidgetById(tokenId);
+		if (widget != null)
+		{
+			widget.setValue(value);
+		}
+		else
+		{
+			Token token = findTokenById(tokenId);
+			if (token != null)
 			{
-				if (ExtTokenFieldWidget.this.tokenWidgets.size() > 0)
-				{
-					tokenWidgets.get(tokenWidgets.size() - 1).setFocus(true);
-				}
+				token.value = value;
 			}
-		};
+		}
 	}
 
-	public void updateTokens(List<Token> tokens)
+	private int getInsertIndex(Long beforeTokenId)
 	{
-		// TODO: register changes, not recreate everything
-		removeAllTokens();
-		removeTokenDropTargets();
-		addTokens(tokens);
+		if (beforeTokenId != null)
+		{
+			int index = indexOfToken(beforeTokenId);
+			if (index >= 0)
+			{
+				return index;
+			}
+		}
+		return tokens.size();
+	}
+
+	/**
+	 * @return the dom index of the first token, behind the top spacer in virtual rendering mode
+	 */
+	private int getFirstTokenWidgetIndex()
+	{
+		return topSpacer != null ? 1 : 0;
+	}
+
+	private void insertTokenWidget(TokenWidget widget, int index)
+	{
+		tokenWidgets.add(index, widget);
+		tokenWidgetsById.put(widget.getToken().id, widget);
 
+		insert(widget, getFirstTokenWidgetIndex() + index);
+	}
+
+	/**
+	 * removes the widget at the index from the field, it can be inserted again
+	 * 
+	 * @return the removed widget
+	 */
+	private TokenWidget detachTokenWidget(int index)
+	{
+		TokenWidget widget = tokenWidgets.remove(index);
+		tokenWidgetsById.remove(widget.getToken().id);
+		remove(widget);
+		return widget;
+	}
+
+	/**
+	 * focuses the token to the right of a deleted one or the input, if the last token was deleted
+	 */
+	private void tokensChanged()
+	{
 		int currentTokenCount = tokens.size();
 
 		if (tokenToTheRight != null)
 		{
-			final TokenWidget tokenWidget = findTokenWidget(tokenToTheRight);
+			final int index = indexOfToken(tokenToTheRight.id);
 			Scheduler.get().scheduleDeferred(() -> {
-				if (tokenWidget != null)
-				{
-					tokenWidget.setFocus(true);
-				}
+				focusToken(index);
 				tokenToTheRight = null;
 			});
 		}
@@ -164,16 +1000,11 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 			boolean lastTokenWasRemoved = (currentTokenCount == 0) && (tokenCount == 1);
 			if (lastTokenWasRemoved)
 			{
-				Scheduler.get().scheduleDeferred(() -> {
-					if (inputFilterSelect != null)
-						inputFilterSelect.tb.setFocus(true);
-					else if (inputButton != null)
-						inputButton.setFocus(true);
-				});
+				Scheduler.get().scheduleDeferred(() -> focusInput());
 			}
 		}
 
-		tokenCount = tokens.size();
+		tokenCount = currentTokenCount;
 	}
 
 	protected TokenWidget buildTokenWidget(final Token token)
@@ -188,41 +1019,142 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 			}
 
 			@Override
-			protected void buildIcon(final TokenAction action, final Anchor actionAnchor)
+			protected void buildIcon(final TokenAction action, final Element actionAnchor)
 			{
 				if (icons != null && icons.containsKey(action))
 				{
 					Icon icon = applicationConnection.getIcon(icons.get(action));
-					actionAnchor.getElement().insertBefore(icon.getElement(), null);
+					actionAnchor.insertBefore(icon.getElement(), null);
 				}
 			}
 		};
-		widget.addFocusHandler(event -> widget.getElement().addClassName(TokenWidget.FOCUS_CLASS_NAME));
+		return widget;
+	}
+
+	/**
+	 * registers the delegated listeners, which dispatch the events of all tokens
+	 */
+	private void initTokenEventDelegation()
+	{
+		addDomHandler(this::onTokenClick, ClickEvent.getType());
+		addDomHandler(this::onTokenKeyDown, KeyDownEvent.getType());
+		addDomHandler(this::onTokenDragStart, DragStartEvent.getType());
+		DOM.sinkBitlessEvent(getElement(), FOCUS_IN_EVENT);
+		DOM.sinkBitlessEvent(getElement(), FOCUS_OUT_EVENT);
+	}
 
-		widget.addBlurHandler(event -> widget.getElement().removeClassName(TokenWidget.FOCUS_CLASS_NAME));
+	@Override
+	public void onBrowserEvent(Event event)
+	{
+		super.onBrowserEvent(event);
 
-		widget.addKeyDownHandler(event -> {
-			if (event.getNativeKeyCode() == KeyCodes.KEY_LEFT)
+		String type = event.getType();
+		if (FOCUS_IN_EVENT.equals(type) || FOCUS_OUT_EVENT.equals(type))
+		{
+			TokenWidget widget = findTokenWidgetByEventTarget(event.getEventTarget());
+			if (widget != null)
 			{
-				leftKeyDown(widget);
+				widget.setStyleName(TokenWidget.FOCUS_CLASS_NAME, FOCUS_IN_EVENT.equals(type));
 			}
-			else if (event.getNativeKeyCode() == KeyCodes.KEY_RIGHT)
+		}
+	}
+
+	private void onTokenClick(ClickEvent event)
+	{
+		TokenWidget widget = findTokenWidgetByEventTarget(event.getNativeEvent().getEventTarget());
+		if (widget == null)
+		{
+			return;
+		}
+
+		Element target = Element.as(event.getNativeEvent().getEventTarget());
+		Element actionElement = findAncestor(target, widget.getElement(), e -> e.hasAttribute(TokenWidget.TOKEN_ACTION_ATTRIBUTE));
+		if (actionElement != null)
+		{
+			event.preventDefault();
+			TokenAction tokenAction = findTokenAction(actionElement.getAttribute(TokenWidget.TOKEN_ACTION_ATTRIBUTE));
+			if (tokenAction != null)
 			{
-				rightKeyDown(widget);
+				widget.onTokenActionClicked(tokenAction);
 			}
-			else if (event.getNativeKeyCode() == KeyCodes.KEY_DELETE)
+		}
+		else if (findAncestor(target, widget.getElement(), e -> e.hasClassName(TokenWidget.TOKEN_LABEL_CLASS_NAME)) != null)
+		{
+			widget.onLabelClicked();
+		}
+	}
+
+	private void onTokenKeyDown(KeyDownEvent event)
+	{
+		TokenWidget widget = findTokenWidgetByEventTarget(event.getNativeEvent().getEventTarget());
+		if (widget == null)
+		{
+			return;
+		}
+
+		if (event.getNativeKeyCode() == KeyCodes.KEY_LEFT)
+		{
+			leftKeyDown(widget);
+		}
+		else if (event.getNativeKeyCode() == KeyCodes.KEY_RIGHT)
+		{
+			rightKeyDown(widget);
+		}
+		else if (event.getNativeKeyCode() == KeyCodes.KEY_DELETE)
+		{
+			TokenAction deleteTokenAction = findTokenAction(TokenAction.DELETE_TOKEN_ACTION_IDENTIFIER);
+			if (deleteTokenAction != null)
 			{
-				TokenAction deleteTokenAction = findTokenAction(TokenAction.DELETE_TOKEN_ACTION_IDENTIFIER);
-				if (deleteTokenAction != null)
+				if (isEnabled() && !isReadOnly())
 				{
-					if (isEnabled() && !isReadOnly())
-					{
-						tokenActionClicked(widget, deleteTokenAction);
-					}
+					tokenActionClicked(widget, deleteTokenAction);
 				}
 			}
-		});
-		return widget;
+		}
+	}
+
+	private void onTokenDragStart(DragStartEvent event)
+	{
+		TokenWidget widget = findTokenWidgetByEventTarget(event.getNativeEvent().getEventTarget());
+		if (widget != null && tokenDragAndDropEnabled)
+		{
+			event.setData(TokenWidget.SOURCE_TOKEN_ID_PROPERTY, Long.toString(widget.getToken().id));
+		}
+	}
+
+	/**
+	 * @return the rendered token widget containing the event target or null, if the target is no part of a token
+	 */
+	private TokenWidget findTokenWidgetByEventTarget(EventTarget eventTarget)
+	{
+		if (eventTarget == null || !Element.is(eventTarget))
+		{
+			return null;
+		}
+
+		Element tokenElement = findAncestor(Element.as(eventTarget), getElement(), e -> e.hasAttribute(TokenWidget.TOKEN_ID_ATTRIBUTE));
+		if (tokenElement == null)
+		{
+			return null;
+		}
+		return findTokenWidgetById(Long.parseLong(tokenElement.getAttribute(TokenWidget.TOKEN_ID_ATTRIBUTE)));
+	}
+
+	/**
+	 * @return the element or its nearest ancestor below stop, which matches the predicate
+	 */
+	private static Element findAncestor(Element element, Element stop, Predicate<Element> predicate)
+	{
+		Element current = element;
+		while (current != null && current != stop)
+		{
+			if (predicate.test(current))
+			{
+				return current;
+			}
+			current = current.getParentElement();
+		}
+		return stop != null && predicate.test(stop) ? stop : null;
 	}
 
 	protected TokenAction findTokenAction(String identifier)
@@ -239,16 +1171,82 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 
 	protected void tokenActionClicked(final TokenWidget widget, final TokenAction tokenAction)
 	{
+		long tokenId = widget.getToken().id;
+		TokenInteraction interaction = TokenInteraction.actionClicked(tokenId, tokenAction.identifier);
+
 		if (tokenAction.identifier.equals(TokenAction.DELETE_TOKEN_ACTION_IDENTIFIER))
 		{
-			TokenWidget tokenWidgetToTheRight = getTokenToTheRight(widget);
-			if (tokenWidgetToTheRight != null)
+			tokenToTheRight = tokens.getNext(tokenId);
+			if (isOptimistic())
+			{
+				interaction.optimistic = true;
+				applyOptimistically(TokenOperation.remove(tokenId));
+			}
+		}
+
+		tokenInteractionQueue.add(interaction);
+	}
+
+	/**
+	 * called by the drop zone, if a token was dropped before or after another one
+	 */
+	protected void tokenDropped(long sourceTokenId, long targetTokenId, DropTargetType type)
+	{
+		TokenInteraction interaction = TokenInteraction.dropped(sourceTokenId, targetTokenId, type);
+
+		if (isOptimistic())
+		{
+			Long beforeTokenId = targetTokenId;
+			if (DropTargetType.AFTER.equals(type))
+			{
+				Token next = tokens.getNext(targetTokenId);
+				beforeTokenId = next != null ? next.id : null;
+			}
+
+			interaction.optimistic = true;
+			if (beforeTokenId == null || beforeTokenId != sourceTokenId)
 			{
-				tokenToTheRight = tokenWidgetToTheRight.getToken();
+				applyOptimistically(TokenOperation.move(sourceTokenId, beforeTokenId));
 			}
 		}
 
-		serverRpc.tokenActionClicked(widget.getToken(), tokenAction);
+		tokenInteractionQueue.add(interaction);
+	}
+
+	/**
+	 * called by the suggest box, if a token of the client side catalog was chosen
+	 */
+	protected void suggestionChosen(Token token)
+	{
+		TokenInteraction interaction = TokenInteraction.suggestionChosen(token.id);
+
+		if (isOptimistic())
+		{
+			interaction.optimistic = true;
+			applyOptimistically(TokenOperation.insert(token, null));
+		}
+
+		tokenInteractionQueue.add(interaction);
+	}
+
+	/**
+	 * In optimistic mode deletes and drops are applied to the tokens right away, without waiting for the server. The
+	 * operations the server sends for them are idempotent then. If the server rejects an interaction, it sends a
+	 * snapshot, which rolls back the optimistic change.
+	 */
+	public void setOptimisticUpdatesEnabled(boolean value)
+	{
+		this.optimisticUpdatesEnabled = value;
+	}
+
+	private boolean isOptimistic()
+	{
+		return optimisticUpdatesEnabled && !isLazy;
+	}
+
+	private void applyOptimistically(TokenOperation operation)
+	{
+		applyTokenOperations(Collections.singletonList(operation));
 	}
 
 	protected void rightKeyDown(TokenWidget token)
@@ -261,13 +1259,22 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 		}
 		else
 		{
-			if (inputFilterSelect != null)
-				inputFilterSelect.tb.setFocus(true);
-			else if (inputButton != null)
-				inputButton.setFocus(true);
+			focusInput();
 		}
 	}
 
+	private void focusInput()
+	{
+		if (inputFilterSelect != null)
+			inputFilterSelect.tb.setFocus(true);
+		else if (inputButton != null)
+			inputButton.setFocus(true);
+		else if (suggestBox != null)
+			suggestBox.setFocus(true);
+		else if (pasteInput != null)
+			pasteInput.setFocus(true);
+	}
+
 	protected void leftKeyDown(TokenWidget token)
 	{
 		TokenWidget tokenToTheLeft = getTokenToTheLeft(token);
@@ -279,83 +1286,51 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 
 	protected TokenWidget getTokenToTheLeft(TokenWidget token)
 	{
-		if (!hasMoreTokensLeft(token))
+		long tokenId = token.getToken().id;
+		if (!tokens.hasPrevious(tokenId))
 		{
 			return null;
 		}
-		int indexOf = tokenWidgets.indexOf(token);
-		TokenWidget tokenWidget = tokenWidgets.get(indexOf - 1);
-		return tokenWidget;
+		return getNeighbourWidget(tokenId, tokens.getPrevious(tokenId), -1);
 	}
 
 	protected TokenWidget getTokenToTheRight(TokenWidget token)
 	{
-		if (!hasMoreTokensRight(token))
+		long tokenId = token.getToken().id;
+		if (!tokens.hasNext(tokenId))
 		{
 			return null;
 		}
-		int indexOf = tokenWidgets.indexOf(token);
-		TokenWidget tokenWidget = tokenWidgets.get(indexOf + 1);
-		return tokenWidget;
+		return getNeighbourWidget(tokenId, tokens.getNext(tokenId), 1);
 	}
 
 	protected boolean hasMoreTokensLeft(TokenWidget token)
 	{
-		int indexOf = tokenWidgets.indexOf(token);
-		return indexOf > 0;
+		return tokens.hasPrevious(token.getToken().id);
 	}
 
 	protected boolean hasMoreTokensRight(TokenWidget token)
 	{
-		int indexOf = tokenWidgets.indexOf(token);
-		return indexOf < tokenWidgets.size() - 1;
-	}
-
-	protected void addTokens(List<Token> tokens)
-	{
-		for (int i = 0; i < tokens.size(); i++)
-		{
-			Token t = tokens.get(i);
-			insertTokenAtPosition(i, t);
-		}
-
-		if (tokenDragAndDropEnabled)
-		{
-			int lastTokenIndex = tokens.size() - 1;
-			Token lastToken = tokens.get(lastTokenIndex);
-			lastTokenIndex *= 2;
-			addDropTargetAfter(lastTokenIndex, lastToken);
-		}
+		return tokens.hasNext(token.getToken().id);
 	}
 
-	private void insertTokenAtPosition(int i, Token t)
+	/**
+	 * @return the widget of the neighbour of a token, only if it is not rendered or not yet loaded, its index is
+	 *         looked up to render it
+	 */
+	private TokenWidget getNeighbourWidget(long tokenId, Token neighbour, int offset)
 	{
-		TokenWidget widget = buildTokenWidget(t);
-		tokenWidgets.add(widget);
-
-		if (tokenDragAndDropEnabled)
+		TokenWidget result = neighbour != null ? findTokenWidgetById(neighbour.id) : null;
+		if (result == null)
 		{
-			i *= 2;
+			return ensureTokenRendered(indexOfToken(tokenId) + offset);
 		}
 
-		insert(widget, i);
-
-		if (tokenDragAndDropEnabled)
+		if (virtualRenderingEnabled)
 		{
-			addDropTargetBefore(i, t);
+			result.getElement().scrollIntoView();
 		}
-	}
-
-	private void addDropTargetBefore(int i, Token t)
-	{
-		DropTargetWidget dropTarget = new DropTargetWidget(this, DropTargetType.BEFORE, t);
-		insert(dropTarget, i);
-	}
-
-	private void addDropTargetAfter(int i, Token t)
-	{
-		DropTargetWidget dropTarget = new DropTargetWidget(this, DropTargetType.AFTER, t);
-		insert(dropTarget, i + 2);
+		return result;
 	}
 
 	protected void removeAllTokens()
@@ -364,62 +1339,27 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 		{
 			remove(t);
 		}
+		destroyedWidgetCount += tokenWidgets.size();
 		tokenWidgets.clear();
+		tokenWidgetsById.clear();
 	}
 
-	protected void removeTokenDropTargets()
+	private int indexOfToken(long tokenId)
 	{
-		NodeList<Node> childNodes = getElement().getChildNodes();
-		Set<Node> toBeRemoved = new HashSet<Node>();
-
-		for (int i = 0; i < childNodes.getLength(); i++)
-		{
-			Node item = childNodes.getItem(i);
-
-			com.google.gwt.dom.client.Element element = (com.google.gwt.dom.client.Element) item.cast();
-			boolean hasDropTargetClass = DropTargetWidget.DROP_TARGET_CLASS_NAME.equals(element.getClassName());
-			if (hasDropTargetClass)
-			{
-				toBeRemoved.add(item);
-			}
-		}
-
-		for (Node node : toBeRemoved)
-		{
-			getElement().removeChild(node);
-		}
+		return tokens.indexOf(tokenId);
 	}
 
-	/**
-	 * maybe a map would be a better idea
-	 */
 	public Token findTokenById(long tokenId)
 	{
-		for (TokenWidget t : tokenWidgets)
-		{
-			if (t.getToken().id == tokenId)
-			{
-				return t.getToken();
-			}
-		}
-
-		return null;
+		return tokens.getById(tokenId);
 	}
 
 	/**
-	 * maybe a map would be a better idea
+	 * @return the rendered widget of the token or null, if it is not rendered
 	 */
-	private TokenWidget findTokenWidget(Token token)
+	private TokenWidget findTokenWidgetById(long tokenId)
 	{
-		for (TokenWidget t : tokenWidgets)
-		{
-			if (t.getToken().equals(token))
-			{
-				return t;
-			}
-		}
-
-		return null;
+		return tokenWidgetsById.get(tokenId);
 	}
 
 	public void setServerRpc(ExtTokenFieldServerRpc serverRpc)
@@ -432,6 +1372,16 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 		return this.serverRpc;
 	}
 
+	public void setTokenInteractionQueue(TokenInteractionQueue tokenInteractionQueue)
+	{
+		this.tokenInteractionQueue = tokenInteractionQueue;
+	}
+
+	public TokenInteractionQueue getTokenInteractionQueue()
+	{
+		return this.tokenInteractionQueue;
+	}
+
 	@Override
 	public boolean isEnabled()
 	{
@@ -442,6 +1392,7 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 	public void setEnabled(boolean enabled)
 	{
 		isEnabled = enabled;
+		updateInputVisibility();
 	}
 
 	public boolean isReadOnly()
@@ -462,5 +1413,6 @@ public class ExtTokenFieldWidget extends FlowPanel implements HasEnabled
 			removeStyleDependentName(readOnlyStyle);
 		}
 		this.isReadOnly = readOnly;
+		updateInputVisibility();
 	}
 }
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.client;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import com.explicatis.ext_token_field.shared.ExtTokenFieldServerRpc;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.event.dom.client.KeyCodes;
+import com.google.gwt.user.client.Event;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.InlineLabel;
+import com.google.gwt.user.client.ui.TextBox;
+
+/**
+ * Text input, which splits pasted or typed text at delimiters into values and sends them to the server in batches,
+ * which resolves them into tokens.
+ *
+ * The text is split in chunks by an incremental command, so even a paste of megabytes does not block the browser.
+ * Values are trimmed, empty and repeated values are skipped. One batch is sent at a time, the next one when the
+ * server answered, meanwhile the progress is shown next to the input. The values, which could not be resolved, are
+ * put back into the input, when the paste is finished, as well as the values beyond the maximum number of values of
+ * one paste. The progress and status texts are templates, in which {0}, {1} and {2} are replaced by the counts.
+ */
+public class PasteInput extends FlowPanel
+{
+
+	public static final String				CLASS_NAME			= "paste-input";
+	public static final String				PROGRESS_CLASS_NAME	= "paste-progress";
+
+	private static final int				CHUNK_SIZE			= 32 * 1024;
+
+	private final ExtTokenFieldServerRpc	serverRpc;
+	private final PasteTextBox				textBox				= new PasteTextBox();
+	private final InlineLabel				progress			= new InlineLabel();
+	private String							delimiters			= ",;\n\r\t";
+	private int								batchSize			= 500;
+	private int								maxValues			= 100000;
+	private String							progressText		= "{0} / {1} checked, {2} found";
+	private String							unresolvedText		= "{0} of {1} not found";
+	private String							limitText			= "{0} over the limit of {1} values";
+	/**
+	 * the texts pasted while the previous one is still split
+	 */
+	private final List<String>				pendingTexts		= new LinkedList<>();
+	private String							text;
+	private int								valueStart;
+	private int								scanPosition;
+	private final List<String>				values				= new ArrayList<>();
+	private final Set<String>				splitValues			= new HashSet<>();
+	private final List<String>				unresolvedValues	= new ArrayList<>();
+	private final Set<String>				skippedValues		= new LinkedHashSet<>();
+	private int								pasteId				= 0;
+	private boolean							isPasting			= false;
+	private boolean							isSplitting			= false;
+	private boolean							isBatchPending		= false;
+	private boolean							isLastBatchSent		= false;
+	private int								resolvedCount		= 0;
+	private int								answeredCount		= 0;
+
+	public PasteInput(ExtTokenFieldServerRpc serverRpc)
+	{
+		this.serverRpc = serverRpc;
+		setStyleName(CLASS_NAME);
+		progress.setStyleName(PROGRESS_CLASS_NAME);
+		add(textBox);
+		add(progress);
+
+		textBox.addKeyDownHandler(event -> {
+			if (event.getNativeKeyCode() == KeyCodes.KEY_ENTER)
+			{
+				event.preventDefault();
+				submitInput();
+			}
+		});
+		textBox.addKeyPressHandler(event -> {
+			if (delimiters.indexOf(event.getCharCode()) >= 0)
+			{
+				event.preventDefault();
+				submitInput();
+			}
+		});
+	}
+
+	public TextBox getTextBox()
+	{
+		return textBox;
+	}
+
+	public void setDelimiters(String delimiters)
+	{
+		this.delimiters = delimiters;
+	}
+
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public void setMaxValues(int maxValues)
+	{
+		this.maxValues = Math.max(1, maxValues);
+	}
+
+	/**
+	 * @param progressText
+	 *            the text shown while pasting, {0} is replaced by the checked, {1} by the split and {2} by the found
+	 *            values
+	 */
+	public void setProgressText(String progressText)
+	{
+		this.progressText = progressText;
+	}
+
+	/**
+	 * @param unresolvedText
+	 *            the text shown after pasting, {0} is replaced by the values not found and {1} by the checked values
+	 */
+	public void setUnresolvedText(String unresolvedText)
+	{
+		this.unresolvedText = unresolvedText;
+	}
+
+	/**
+	 * @param limitText
+	 *            the text shown after pasting, {0} is replaced by the values over the limit and {1} by the limit
+	 */
+	public void setLimitText(String limitText)
+	{
+		this.limitText = limitText;
+	}
+
+	public void setFocus(boolean focused)
+	{
+		textBox.setFocus(focused);
+	}
+
+	private void submitInput()
+	{
+		String input = textBox.getText();
+		textBox.setText("");
+		submit(input);
+	}
+
+	/**
+	 * Splits the text into values and resolves them, as part of the current paste, if it is not finished yet. If the
+	 * last batch of the current paste was already sent, the text is split, when the paste is finished.
+	 */
+	public void submit(String pastedText)
+	{
+		if (pastedText == null || pastedText.trim().isEmpty())
+		{
+			return;
+		}
+
+		pendingTexts.add(pastedText);
+		if (!isPasting)
+		{
+			startPaste();
+		}
+		else if (!isSplitting && !isLastBatchSent)
+		{
+			startSplitting();
+		}
+	}
+
+	private void startPaste()
+	{
+		isPasting = true;
+		isBatchPending = false;
+		isLastBatchSent = false;
+		pasteId++;
+		text = null;
+		values.clear();
+		splitValues.clear();
+		unresolvedValues.clear();
+		skippedValues.clear();
+		resolvedCount = 0;
+		answeredCount = 0;
+		startSplitting();
+	}
+
+	private void startSplitting()
+	{
+		isSplitting = true;
+		Scheduler.get().scheduleIncremental(this::splitChunk);
+	}
+
+	/**
+	 * splits the next chunk of the text, a value crossing the end of the chunk is completed by the next one
+	 * 
+	 * @return true, if there is more text to split
+	 */
+	private boolean splitChunk()
+	{
+		if (text == null)
+		{
+			text = pendingTexts.remove(0);
+			valueStart = 0;
+			scanPosition = 0;
+		}
+
+		int end = Math.min(text.length(), scanPosition + CHUNK_SIZE);
+		for (; scanPosition < end; scanPosition++)
+		{
+			if (delimiters.indexOf(text.charAt(scanPosition)) >= 0)
+			{
+				addValue(text.substring(valueStart, scanPosition));
+				valueStart = scanPosition + 1;
+			}
+		}
+		if (end == text.length())
+		{
+			addValue(text.substring(valueStart));
+			text = null;
+		}
+
+		isSplitting = text != null || !pendingTexts.isEmpty();
+		sendBatch();
+		updateProgress();
+		return isSplitting;
+	}
+
+	private void addValue(String value)
+	{
+		String trimmed = value.trim();
+		if (trimmed.isEmpty() || splitValues.contains(trimmed))
+		{
+			return;
+		}
+
+		if (splitValues.size() < maxValues)
+		{
+			splitValues.add(trimmed);
+			values.add(trimmed);
+		}
+		else
+		{
+			skippedValues.add(trimmed);
+		}
+	}
+
+	/**
+	 * sends the next batch, if none is pending, and it is full or the whole text was split
+	 */
+	private void sendBatch()
+	{
+		if (!isPasting || isBatchPending || isLastBatchSent || isSplitting && values.size() < batchSize)
+		{
+			return;
+		}
+
+		List<String> batch = new ArrayList<>(values.subList(0, Math.min(batchSize, values.size())));
+		values.subList(0, batch.size()).clear();
+		isLastBatchSent = !isSplitting && values.isEmpty();
+		isBatchPending = true;
+		serverRpc.resolvePastedValues(pasteId, batch, isLastBatchSent);
+	}
+
+	/**
+	 * called, when the server resolved the pending batch
+	 */
+	public void batchResolved(int pasteId, int resolvedCount, List<String> unresolvedValues)
+	{
+		if (pasteId != this.pasteId || !isBatchPending)
+		{
+			return;
+		}
+
+		isBatchPending = false;
+		this.resolvedCount += resolvedCount;
+		this.answeredCount += resolvedCount + unresolvedValues.size();
+		this.unresolvedValues.addAll(unresolvedValues);
+
+		if (isLastBatchSent)
+		{
+			finishPaste();
+		}
+		else
+		{
+			sendBatch();
+			updateProgress();
+		}
+	}
+
+	private void finishPaste()
+	{
+		isPasting = false;
+		splitValues.clear();
+
+		List<String> status = new ArrayList<>();
+		if (!unresolvedValues.isEmpty())
+		{
+			status.add(format(unresolvedText, unresolvedValues.size(), answeredCount));
+		}
+		if (!skippedValues.isEmpty())
+		{
+			status.add(format(limitText, skippedValues.size(), maxValues));
+		}
+
+		List<String> leftValues = new ArrayList<>(unresolvedValues);
+		leftValues.addAll(skippedValues);
+		if (!leftValues.isEmpty())
+		{
+			String separator = delimiters.isEmpty() || Character.isWhitespace(delimiters.charAt(0)) ? " " : delimiters.charAt(0) + " ";
+			String left = String.join(separator, leftValues);
+			String input = textBox.getText().trim();
+			textBox.setText(input.isEmpty() ? left : left + separator + input);
+		}
+		progress.setText(String.join(", ", status));
+		unresolvedValues.clear();
+		skippedValues.clear();
+
+		if (!pendingTexts.isEmpty())
+		{
+			startPaste();
+		}
+	}
+
+	private void updateProgress()
+	{
+		if (isPasting)
+		{
+			progress.setText(format(progressText, answeredCount, splitValues.size() + (isSplitting ? "+" : ""), resolvedCount));
+		}
+	}
+
+	/**
+	 * replaces {0}, {1} and so on in the template by the arguments
+	 */
+	private static String format(String template, Object... arguments)
+	{
+		String result = template;
+		for (int i = 0; i < arguments.length; i++)
+		{
+			result = result.replace("{" + i + "}", String.valueOf(arguments[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Takes the pasted text from the clipboard of the paste event, so a large text is never put into the input. If
+	 * the browser does not provide it, the text is taken from the input after the paste.
+	 */
+	private class PasteTextBox extends TextBox
+	{
+
+		PasteTextBox()
+		{
+			sinkEvents(Event.ONPASTE);
+		}
+
+		@Override
+		public void onBrowserEvent(Event event)
+		{
+			super.onBrowserEvent(event);
+			if (event.getTypeInt() != Event.ONPASTE)
+			{
+				return;
+			}
+
+			String pastedText = getPastedText(event);
+			if (pastedText != null)
+			{
+				event.preventDefault();
+				String input = getText();
+				setText("");
+				submit(input + pastedText);
+			}
+			else
+			{
+				Scheduler.get().scheduleDeferred(() -> submitInput());
+			}
+		}
+	}
+
+	private static native String getPastedText(NativeEvent event)
+	/*-{
+		var clipboardData = event.clipboardData || $wnd.clipboardData;
+		return clipboardData ? clipboardData.getData('text') : null;
+	}-*/;
+}
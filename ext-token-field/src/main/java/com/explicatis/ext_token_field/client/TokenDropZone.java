@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.client;
+
+import java.util.List;
+
+import com.explicatis.ext_token_field.shared.DropTargetType;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
+import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.dom.client.Style.Display;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.DragEndEvent;
+import com.google.gwt.event.dom.client.DragLeaveEvent;
+import com.google.gwt.event.dom.client.DragOverEvent;
+import com.google.gwt.event.dom.client.DropEvent;
+
+/**
+ * The single drop target of an {@link ExtTokenFieldWidget} for reordering tokens by drag and drop.
+ *
+ * The drop handlers are registered once on the field. While dragging, the rectangles of the rendered tokens are
+ * cached in render order and the insertion point is computed from the pointer position: the row is found by binary
+ * search, the token within the row by its horizontal center. One shared indicator shows the insertion point.
+ */
+public class TokenDropZone
+{
+
+	public static final String			DROP_INDICATOR_CLASS_NAME	= "token-drop-indicator";
+
+	private final ExtTokenFieldWidget	fieldWidget;
+	private final Element				indicator;
+
+	private List<TokenWidget>			cachedWidgets;
+	private int[]						lefts;
+	private int[]						tops;
+	private int[]						widths;
+	private int[]						heights;
+
+	public TokenDropZone(ExtTokenFieldWidget fieldWidget)
+	{
+		this.fieldWidget = fieldWidget;
+
+		indicator = Document.get().createDivElement();
+		indicator.setClassName(DROP_INDICATOR_CLASS_NAME);
+		indicator.getStyle().setDisplay(Display.NONE);
+		fieldWidget.getElement().appendChild(indicator);
+
+		fieldWidget.addDomHandler(this::onDragOver, DragOverEvent.getType());
+		fieldWidget.addDomHandler(this::onDragLeave, DragLeaveEvent.getType());
+		fieldWidget.addDomHandler(this::onDrop, DropEvent.getType());
+		fieldWidget.addDomHandler(event -> reset(), DragEndEvent.getType());
+	}
+
+	/**
+	 * has to be called whenever rendered tokens might have moved, e.g. after rendering or scrolling
+	 */
+	public void invalidate()
+	{
+		cachedWidgets = null;
+	}
+
+	private void reset()
+	{
+		invalidate();
+		indicator.getStyle().setDisplay(Display.NONE);
+	}
+
+	private void onDragOver(DragOverEvent event)
+	{
+		if (!fieldWidget.getTokenDragAndDropEnabled())
+		{
+			return;
+		}
+
+		event.preventDefault();
+
+		int index = findDropIndex(event.getNativeEvent());
+		if (index < 0)
+		{
+			indicator.getStyle().setDisplay(Display.NONE);
+			return;
+		}
+
+		// centers the 2px indicator in the 3px margin next to the token
+		boolean isAfter = isAfter(event.getNativeEvent(), index);
+		int left = isAfter ? lefts[index] + widths[index] + 2 : lefts[index] - 4;
+		indicator.getStyle().setLeft(left, Unit.PX);
+		indicator.getStyle().setTop(tops[index], Unit.PX);
+		indicator.getStyle().setHeight(heights[index], Unit.PX);
+		indicator.getStyle().clearDisplay();
+	}
+
+	private void onDragLeave(DragLeaveEvent event)
+	{
+		EventTarget relatedTarget = event.getNativeEvent().getRelatedEventTarget();
+		boolean isInside = relatedTarget != null && Element.is(relatedTarget) && fieldWidget.getElement().isOrHasChild(Element.as(relatedTarget));
+		if (!isInside)
+		{
+			reset();
+		}
+	}
+
+	private void onDrop(DropEvent event)
+	{
+		if (!fieldWidget.getTokenDragAndDropEnabled())
+		{
+			return;
+		}
+
+		event.preventDefault();
+
+		int index = findDropIndex(event.getNativeEvent());
+		String sourceTokenId = event.getData(TokenWidget.SOURCE_TOKEN_ID_PROPERTY);
+		if (index >= 0 && sourceTokenId != null && !sourceTokenId.isEmpty())
+		{
+			DropTargetType type = isAfter(event.getNativeEvent(), index) ? DropTargetType.AFTER : DropTargetType.BEFORE;
+			wasDropped(Long.parseLong(sourceTokenId), cachedWidgets.get(index).getToken().id, type);
+		}
+
+		reset();
+	}
+
+	protected void wasDropped(long sourceTokenId, long targetTokenId, DropTargetType type)
+	{
+		boolean sourceIsTarget = sourceTokenId == targetTokenId;
+		if (fieldWidget.findTokenById(sourceTokenId) == null || sourceIsTarget)
+			return;
+
+		fieldWidget.tokenDropped(sourceTokenId, targetTokenId, type);
+	}
+
+	/**
+	 * @return the index of the rendered token, the pointer is before or after, or -1 if there is no token
+	 */
+	private int findDropIndex(NativeEvent event)
+	{
+		cacheTokenRectangles();
+		int count = cachedWidgets.size();
+		if (count == 0)
+		{
+			return -1;
+		}
+
+		int y = getRelativeY(event);
+		int x = getRelativeX(event);
+
+		// last token, whose row starts above the pointer
+		int low = 0;
+		int high = count - 1;
+		while (low < high)
+		{
+			int middle = (low + high + 1) >>> 1;
+			if (tops[middle] <= y)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+
+		int rowEnd = low;
+		int rowStart = low;
+		while (rowStart > 0 && tops[rowStart - 1] == tops[rowEnd])
+		{
+			rowStart--;
+		}
+
+		for (int i = rowStart; i <= rowEnd; i++)
+		{
+			if (x < lefts[i] + widths[i])
+			{
+				return i;
+			}
+		}
+		return rowEnd;
+	}
+
+	private boolean isAfter(NativeEvent event, int index)
+	{
+		return getRelativeX(event) >= lefts[index] + widths[index] / 2;
+	}
+
+	private int getRelativeX(NativeEvent event)
+	{
+		Element root = fieldWidget.getElement();
+		return event.getClientX() - root.getAbsoluteLeft() + root.getScrollLeft() + Document.get().getScrollLeft();
+	}
+
+	private int getRelativeY(NativeEvent event)
+	{
+		Element root = fieldWidget.getElement();
+		return event.getClientY() - root.getAbsoluteTop() + root.getScrollTop() + Document.get().getScrollTop();
+	}
+
+	private void cacheTokenRectangles()
+	{
+		if (cachedWidgets != null)
+		{
+			return;
+		}
+
+		cachedWidgets = fieldWidget.getTokenWidgets();
+		int count = cachedWidgets.size();
+		lefts = new int[count];
+		tops = new int[count];
+		widths = new int[count];
+		heights = new int[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			Element element = cachedWidgets.get(i).getElement();
+			lefts[i] = element.getOffsetLeft();
+			tops[i] = element.getOffsetTop();
+			widths[i] = element.getOffsetWidth();
+			heights[i] = element.getOffsetHeight();
+		}
+	}
+}
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.client;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import com.explicatis.ext_token_field.shared.Token;
+import com.explicatis.ext_token_field.shared.TokenColumns;
+
+/**
+ * The ordered tokens of an {@link ExtTokenFieldWidget}, indexed by their id.
+ *
+ * The entries form a treap ordered by position and annotated with subtree sizes, so the token at an index, the index
+ * of a token and inserting or removing a token at an index take O(log n). Every entry is also linked to its
+ * neighbours, so looking up a token and its neighbours is O(1). In lazy mode not yet loaded tokens are null.
+ *
+ * The index can be backed by {@link TokenColumns}, then a token is only created, when it is accessed, also after
+ * other tokens were inserted or removed.
+ */
+public class TokenIndex
+{
+
+	private final Map<Long, Entry>	entriesById	= new HashMap<>();
+	private final Random			random		= new Random();
+	private final List<Token>		view		= new AbstractList<Token>()
+												{
+
+													@Override
+													public Token get(int index)
+													{
+														return TokenIndex.this.get(index);
+													}
+
+													@Override
+													public int size()
+													{
+														return TokenIndex.this.size();
+													}
+
+													@Override
+													public Iterator<Token> iterator()
+													{
+														return new LinkIterator();
+													}
+												};
+	private Entry					root;
+	private Entry					first;
+	/**
+	 * false, until the ids are looked up the first time after a reset
+	 */
+	private boolean					isIndexed;
+	/**
+	 * if not null, the tokens of entries with an ordinal are read from the columns on access
+	 */
+	private TokenColumns			columns;
+
+	public int size()
+	{
+		return size(root);
+	}
+
+	/**
+	 * @return the token at the given index or null, if it is not yet loaded
+	 */
+	public Token get(int index)
+	{
+		return getToken(getEntry(index));
+	}
+
+	/**
+	 * @return the index of the token with the given id or -1, if there is none
+	 */
+	public int indexOf(long tokenId)
+	{
+		Entry entry = getEntry(tokenId);
+		if (entry == null)
+		{
+			return -1;
+		}
+
+		int index = size(entry.left);
+		for (Entry node = entry; node.parent != null; node = node.parent)
+		{
+			if (node == node.parent.right)
+			{
+				index += size(node.parent.left) + 1;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @return the token with the given id or null, if there is none
+	 */
+	public Token getById(long tokenId)
+	{
+		Entry entry = getEntry(tokenId);
+		return entry != null ? getToken(entry) : null;
+	}
+
+	/**
+	 * @return the token to the left of the given one or null, if it is the first one or not yet loaded
+	 */
+	public Token getPrevious(long tokenId)
+	{
+		Entry entry = getEntry(tokenId);
+		return entry != null && entry.previous != null ? getToken(entry.previous) : null;
+	}
+
+	/**
+	 * @return the token to the right of the given one or null, if it is the last one or not yet loaded
+	 */
+	public Token getNext(long tokenId)
+	{
+		Entry entry = getEntry(tokenId);
+		return entry != null && entry.next != null ? getToken(entry.next) : null;
+	}
+
+	/**
+	 * @return true, if there is a token to the left of the given one, also if it is not yet loaded
+	 */
+	public boolean hasPrevious(long tokenId)
+	{
+		Entry entry = getEntry(tokenId);
+		return entry != null && entry.previous != null;
+	}
+
+	/**
+	 * @return true, if there is a token to the right of the given one, also if it is not yet loaded
+	 */
+	public boolean hasNext(long tokenId)
+	{
+		Entry entry = getEntry(tokenId);
+		return entry != null && entry.next != null;
+	}
+
+	public void add(int index, Token token)
+	{
+		if (index < 0 || index > size())
+		{
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+		}
+
+		Entry entry = new Entry(random.nextInt(Integer.MAX_VALUE - 64));
+		entry.token = token;
+		Entry next = index < size() ? getEntry(index) : null;
+		Entry previous = next != null ? next.previous : getLast();
+		link(previous, entry);
+		link(entry, next);
+
+		Entry[] parts = split(root, index);
+		setRoot(merge(merge(parts[0], entry), parts[1]));
+		if (isIndexed && token != null)
+		{
+			entriesById.put(token.id, entry);
+		}
+	}
+
+	public Token remove(int index)
+	{
+		Entry entry = getEntry(index);
+		link(entry.previous, entry.next);
+
+		Entry[] parts = split(root, index);
+		setRoot(merge(parts[0], split(parts[1], 1)[1]));
+
+		Token token = getToken(entry);
+		if (isIndexed && token != null)
+		{
+			entriesById.remove(token.id);
+		}
+		return token;
+	}
+
+	/**
+	 * sets a loaded token in lazy mode
+	 */
+	public void set(int index, Token token)
+	{
+		Entry entry = getEntry(index);
+		Token previous = getToken(entry);
+		if (isIndexed && previous != null)
+		{
+			entriesById.remove(previous.id);
+		}
+
+		entry.token = token;
+		entry.ordinal = -1;
+		if (isIndexed && token != null)
+		{
+			entriesById.put(token.id, entry);
+		}
+	}
+
+	/**
+	 * replaces all tokens
+	 */
+	public void reset(List<Token> newTokens)
+	{
+		Entry[] entries = build(newTokens.size());
+		for (int i = 0; i < entries.length; i++)
+		{
+			entries[i].token = newTokens.get(i);
+		}
+	}
+
+	/**
+	 * replaces all tokens by the given count of not yet loaded tokens
+	 */
+	public void reset(int size)
+	{
+		build(size);
+		isIndexed = true;
+	}
+
+	/**
+	 * replaces all tokens by the encoded ones, they are created on access
+	 */
+	public void reset(TokenColumns newColumns)
+	{
+		Entry[] entries = build(newColumns.size());
+		for (int i = 0; i < entries.length; i++)
+		{
+			entries[i].ordinal = i;
+		}
+		columns = newColumns;
+	}
+
+	/**
+	 * @return an unmodifiable view of the tokens, tokens backed by columns are created on access
+	 */
+	public List<Token> asList()
+	{
+		return view;
+	}
+
+	/**
+	 * replaces all entries by a balanced tree of new ones, whose priorities decrease with the depth, so entries
+	 * inserted later with random priorities below all of them are added at the bottom
+	 * 
+	 * @return the new entries in order
+	 */
+	private Entry[] build(int size)
+	{
+		entriesById.clear();
+		isIndexed = false;
+		columns = null;
+
+		Entry[] entries = new Entry[size];
+		setRoot(build(entries, 0, size, 0));
+		first = size > 0 ? entries[0] : null;
+		for (int i = 1; i < size; i++)
+		{
+			link(entries[i - 1], entries[i]);
+		}
+		return entries;
+	}
+
+	private Entry build(Entry[] entries, int from, int to, int depth)
+	{
+		if (from >= to)
+		{
+			return null;
+		}
+
+		int middle = (from + to) >>> 1;
+		Entry entry = new Entry(Integer.MAX_VALUE - depth);
+		entries[middle] = entry;
+		entry.left = build(entries, from, middle, depth + 1);
+		entry.right = build(entries, middle + 1, to, depth + 1);
+		update(entry);
+		return entry;
+	}
+
+	/**
+	 * @return the entries before the index and the others
+	 */
+	private static Entry[] split(Entry node, int index)
+	{
+		if (node == null)
+		{
+			return new Entry[2];
+		}
+
+		Entry[] result;
+		if (index <= size(node.left))
+		{
+			result = split(node.left, index);
+			node.left = result[1];
+			result[1] = node;
+		}
+		else
+		{
+			result = split(node.right, index - size(node.left) - 1);
+			node.right = result[0];
+			result[0] = node;
+		}
+		update(node);
+		node.parent = null;
+		return result;
+	}
+
+	private static Entry merge(Entry left, Entry right)
+	{
+		if (left == null || right == null)
+		{
+			return left != null ? left : right;
+		}
+
+		if (left.priority >= right.priority)
+		{
+			left.right = merge(left.right, right);
+			update(left);
+			return left;
+		}
+		right.left = merge(left, right.left);
+		update(right);
+		return right;
+	}
+
+	private static void update(Entry node)
+	{
+		node.size = 1 + size(node.left) + size(node.right);
+		if (node.left != null)
+		{
+			node.left.parent = node;
+		}
+		if (node.right != null)
+		{
+			node.right.parent = node;
+		}
+	}
+
+	private static int size(Entry node)
+	{
+		return node != null ? node.size : 0;
+	}
+
+	private void setRoot(Entry node)
+	{
+		root = node;
+		if (node != null)
+		{
+			node.parent = null;
+		}
+	}
+
+	private void link(Entry previous, Entry next)
+	{
+		if (previous != null)
+		{
+			previous.next = next;
+		}
+		else
+		{
+			first = next;
+		}
+		if (next != null)
+		{
+			next.previous = previous;
+		}
+	}
+
+	private Entry getLast()
+	{
+		Entry node = root;
+		while (node != null && node.right != null)
+		{
+			node = node.right;
+		}
+		return node;
+	}
+
+	private Entry getEntry(int index)
+	{
+		if (index < 0 || index >= size())
+		{
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+		}
+
+		Entry node = root;
+		while (true)
+		{
+			int leftSize = size(node.left);
+			if (index < leftSize)
+			{
+				node = node.left;
+			}
+			else if (index > leftSize)
+			{
+				index -= leftSize + 1;
+				node = node.right;
+			}
+			else
+			{
+				return node;
+			}
+		}
+	}
+
+	private Entry getEntry(long tokenId)
+	{
+		if (!isIndexed)
+		{
+			for (Entry entry = first; entry != null; entry = entry.next)
+			{
+				if (entry.token != null)
+				{
+					entriesById.put(entry.token.id, entry);
+				}
+				else if (entry.ordinal >= 0)
+				{
+					entriesById.put(columns.getId(entry.ordinal), entry);
+				}
+			}
+			isIndexed = true;
+		}
+		return entriesById.get(tokenId);
+	}
+
+	private Token getToken(Entry entry)
+	{
+		if (entry.token == null && entry.ordinal >= 0)
+		{
+			entry.token = columns.toToken(entry.ordinal);
+			entry.ordinal = -1;
+		}
+		return entry.token;
+	}
+
+	/**
+	 * iterates the tokens along the links
+	 */
+	private class LinkIterator implements Iterator<Token>
+	{
+
+		private Entry	next	= first;
+
+		@Override
+		public boolean hasNext()
+		{
+			return next != null;
+		}
+
+		@Override
+		public Token next()
+		{
+			if (next == null)
+			{
+				throw new NoSuchElementException();
+			}
+			Entry entry = next;
+			next = entry.next;
+			return getToken(entry);
+		}
+	}
+
+	private static class Entry
+	{
+
+		final int	priority;
+		Token		token;
+		int			ordinal	= -1;
+		int			size	= 1;
+		Entry		left;
+		Entry		right;
+		Entry		parent;
+		Entry		previous;
+		Entry		next;
+
+		Entry(int priority)
+		{
+			this.priority = priority;
+		}
+	}
+}
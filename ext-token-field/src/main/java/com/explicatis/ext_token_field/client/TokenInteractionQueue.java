@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.explicatis.ext_token_field.shared.ExtTokenFieldServerRpc;
+import com.explicatis.ext_token_field.shared.TokenInteraction;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Coalesces token interactions of the user into batches. The first queued interaction starts a short window, all
+ * interactions within it, e.g. of a held delete key or fast drag and drop, are sent with a single server RPC.
+ */
+public class TokenInteractionQueue
+{
+
+	public static final int					FLUSH_DELAY_MILLIS	= 50;
+
+	private final ExtTokenFieldServerRpc	serverRpc;
+	private final List<TokenInteraction>	interactions		= new ArrayList<>();
+	private final Timer						flushTimer			= new Timer()
+																{
+
+																	@Override
+																	public void run()
+																	{
+																		flush();
+																	}
+																};
+
+	public TokenInteractionQueue(ExtTokenFieldServerRpc serverRpc)
+	{
+		this.serverRpc = serverRpc;
+	}
+
+	public void add(TokenInteraction interaction)
+	{
+		interactions.add(interaction);
+		if (!flushTimer.isRunning())
+		{
+			flushTimer.schedule(FLUSH_DELAY_MILLIS);
+		}
+	}
+
+	/**
+	 * sends the queued interactions at once
+	 */
+	public void flush()
+	{
+		flushTimer.cancel();
+		if (interactions.isEmpty())
+		{
+			return;
+		}
+
+		List<TokenInteraction> batch = new ArrayList<>(interactions);
+		interactions.clear();
+		serverRpc.applyTokenInteractions(batch);
+	}
+}
@@ -22,15 +22,17 @@ import java.util.List;
 
 import com.explicatis.ext_token_field.shared.Token;
 import com.explicatis.ext_token_field.shared.TokenAction;
-import com.google.gwt.event.dom.client.ClickHandler;
-import com.google.gwt.user.client.Element;
-import com.google.gwt.user.client.ui.Anchor;
-import com.google.gwt.user.client.ui.FlowPanel;
-import com.google.gwt.user.client.ui.FocusPanel;
-import com.google.gwt.user.client.ui.Label;
-
-@SuppressWarnings("deprecation")
-public class TokenWidget extends FocusPanel
+import com.google.gwt.dom.client.AnchorElement;
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * One token of an {@link ExtTokenFieldWidget}. The token registers no event handlers, all events are dispatched by the
+ * field, which resolves the token by {@link #TOKEN_ID_ATTRIBUTE} and the action by {@link #TOKEN_ACTION_ATTRIBUTE}.
+ */
+public class TokenWidget extends Widget
 {
 
 	public static final String			SOURCE_TOKEN_ID_PROPERTY	= "sourcetokenid";
@@ -39,11 +41,15 @@ public class TokenWidget extends FocusPanel
 	public static final String			TOKEN_LABEL_CLASS_NAME		= "token-label";
 	public static final String			FOCUS_CLASS_NAME			= "focused";
 	public static final String			TOKEN_CONTENT_CLASS_NAME	= "token-content";
+	public static final String			TOKEN_ID_ATTRIBUTE			= "data-token-id";
+	public static final String			TOKEN_ACTION_ATTRIBUTE		= "data-token-action";
+
+	private static final String			DEFAULT_HREF				= "javascript:;";
 
 	private final ExtTokenFieldWidget	extTokenField;
-	private final Token					token;
-	private final Label					label;
-	private final FlowPanel				rootPanel;
+	private Token						token;
+	private final DivElement			label;
+	private final DivElement			contentElement;
 
 	private boolean						isCollapsed					= true;
 	private int							cropLabelLength				= 20;
@@ -53,37 +59,38 @@ public class TokenWidget extends FocusPanel
 		this.extTokenField = extTokenField;
 		this.token = token;
 
-		rootPanel = new FlowPanel();
-		rootPanel.getElement().setClassName(TOKEN_CONTENT_CLASS_NAME);
-
-		final Element rootElement = getElement();
+		Document document = Document.get();
+		final DivElement rootElement = document.createDivElement();
 		rootElement.setClassName(TOKEN_CLASS_NAME);
+		rootElement.setTabIndex(0);
+		setElement(rootElement);
+
+		contentElement = document.createDivElement();
+		contentElement.setClassName(TOKEN_CONTENT_CLASS_NAME);
 
-		label = new Label();
-		label.getElement().setClassName(TOKEN_LABEL_CLASS_NAME);
-		label.addClickHandler(labelClickHandler());
-		rootPanel.add(label);
+		label = document.createDivElement();
+		label.setClassName(TOKEN_LABEL_CLASS_NAME);
+		contentElement.appendChild(label);
 
 		buildTokenActions(tokenActions);
 
 		internalSetLabel();
-		add(rootPanel);
+		rootElement.appendChild(contentElement);
 		initDragAndDrop();
+		updateTokenIdAttribute();
 	}
 
 	private void initDragAndDrop()
 	{
 		if (extTokenField.getTokenDragAndDropEnabled())
 		{
-			final Element rootElement = getElement();
-			rootElement.setDraggable(Element.DRAGGABLE_TRUE);
-			initDragStartHandler();
+			getElement().setDraggable(Element.DRAGGABLE_TRUE);
 		}
 	}
 
-	private void initDragStartHandler()
+	private void updateTokenIdAttribute()
 	{
-		addDragStartHandler(event -> event.setData(SOURCE_TOKEN_ID_PROPERTY, Long.toString(token.id)));
+		getElement().setAttribute(TOKEN_ID_ATTRIBUTE, Long.toString(token.id));
 	}
 
 	private void buildTokenActions(List<TokenAction> tokenActions)
@@ -101,16 +108,18 @@ public class TokenWidget extends FocusPanel
 	{
 		if ((action.inheritsReadOnlyAndEnabled && !extTokenField.isReadOnly() && extTokenField.isEnabled()) || !action.inheritsReadOnlyAndEnabled)
 		{
-			Anchor actionAnchor = new Anchor(action.label);
-			actionAnchor.getElement().setClassName(TOKEN_ACTION_CLASS_NAME);
-			rootPanel.add(actionAnchor);
-			actionAnchor.addClickHandler(event -> onTokenActionClicked(action));
+			AnchorElement actionAnchor = Document.get().createAnchorElement();
+			actionAnchor.setClassName(TOKEN_ACTION_CLASS_NAME);
+			actionAnchor.setHref(DEFAULT_HREF);
+			actionAnchor.setInnerText(action.label != null ? action.label : "");
+			actionAnchor.setAttribute(TOKEN_ACTION_ATTRIBUTE, action.identifier);
+			contentElement.appendChild(actionAnchor);
 
 			buildIcon(action, actionAnchor);
 		}
 	}
 
-	protected void buildIcon(final TokenAction action, final Anchor actionAnchor)
+	protected void buildIcon(final TokenAction action, final Element actionAnchor)
 	{
 
 	}
@@ -120,11 +129,50 @@ public class TokenWidget extends FocusPanel
 		return token;
 	}
 
-	protected ClickHandler labelClickHandler()
+	/**
+	 * binds this widget to another token, e.g. when it is recycled in virtual rendering mode
+	 */
+	public void setToken(Token token)
+	{
+		if (!this.token.equals(token))
+		{
+			collapse();
+		}
+
+		this.token = token;
+		updateTokenIdAttribute();
+		internalSetLabel();
+	}
+
+	public void setValue(String value)
+	{
+		token.value = value;
+		internalSetLabel();
+	}
+
+	public void setFocus(boolean focused)
+	{
+		if (focused)
+		{
+			getElement().focus();
+		}
+		else
+		{
+			getElement().blur();
+		}
+	}
+
+	/**
+	 * called by the field, when the label of this token was clicked
+	 */
+	protected void onLabelClicked()
 	{
-		return event -> toggleExpanded();
+		toggleExpanded();
 	}
 
+	/**
+	 * called by the field, when an action of this token was clicked
+	 */
 	protected void onTokenActionClicked(TokenAction tokenAction)
 	{
 
@@ -136,11 +184,11 @@ public class TokenWidget extends FocusPanel
 		{
 			String substring = token.value.substring(0, cropLabelLength);
 			substring += "...";
-			label.setText(substring);
+			label.setInnerText(substring);
 		}
 		else
 		{
-			label.setText(token.value);
+			label.setInnerText(token.value != null ? token.value : "");
 		}
 	}
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.events;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.List;
+
+import com.explicatis.ext_token_field.Tokenizable;
+import com.vaadin.util.ReflectTools;
+
+/**
+ * Fired once all values of a paste into the text input were resolved, it reports the values, which could not be
+ * resolved into tokenizables.
+ */
+public class TokenizablesPastedEvent extends EventObject
+{
+
+	public static final Method		EVENT_METHOD	= ReflectTools.findMethod(TokenizablesPastedListener.class, "tokenizablesPastedEvent", TokenizablesPastedEvent.class);
+
+	private final List<Tokenizable>	resolvedTokenizables;
+	private final List<String>		unresolvedValues;
+
+	public TokenizablesPastedEvent(Object source, List<Tokenizable> resolvedTokenizables, List<String> unresolvedValues)
+	{
+		super(source);
+		this.resolvedTokenizables = Collections.unmodifiableList(new ArrayList<>(resolvedTokenizables));
+		this.unresolvedValues = Collections.unmodifiableList(new ArrayList<>(unresolvedValues));
+	}
+
+	/**
+	 * @return the resolved tokenizables in pasted order, including those which were already selected
+	 */
+	public List<Tokenizable> getResolvedTokenizables()
+	{
+		return resolvedTokenizables;
+	}
+
+	/**
+	 * @return the pasted values, for which no tokenizable was found, in pasted order
+	 */
+	public List<String> getUnresolvedValues()
+	{
+		return unresolvedValues;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.events;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.explicatis.ext_token_field.Tokenizable;
+import com.vaadin.util.ReflectTools;
+
+/**
+ * Fired once per change of the tokens, also if a whole batch of tokenizables was added, removed or replaced.
+ */
+public class TokensChangedEvent extends EventObject
+{
+
+	public static final Method		EVENT_METHOD	= ReflectTools.findMethod(TokensChangedListener.class, "tokensChangedEvent", TokensChangedEvent.class);
+
+	private final Set<Tokenizable>	addedTokenizables;
+	private final Set<Tokenizable>	removedTokenizables;
+	private final Set<Tokenizable>	movedTokenizables;
+
+	public TokensChangedEvent(Object source, Set<Tokenizable> addedTokenizables, Set<Tokenizable> removedTokenizables, Set<Tokenizable> movedTokenizables)
+	{
+		super(source);
+		this.addedTokenizables = Collections.unmodifiableSet(new LinkedHashSet<>(addedTokenizables));
+		this.removedTokenizables = Collections.unmodifiableSet(new LinkedHashSet<>(removedTokenizables));
+		this.movedTokenizables = Collections.unmodifiableSet(new LinkedHashSet<>(movedTokenizables));
+	}
+
+	/**
+	 * @return the added tokenizables in order of the value
+	 */
+	public Set<Tokenizable> getAddedTokenizables()
+	{
+		return addedTokenizables;
+	}
+
+	public Set<Tokenizable> getRemovedTokenizables()
+	{
+		return removedTokenizables;
+	}
+
+	/**
+	 * @return the kept tokenizables, which were moved to get the new order, the others kept their relative order
+	 */
+	public Set<Tokenizable> getMovedTokenizables()
+	{
+		return movedTokenizables;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.shared;
+
+import java.util.List;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+import elemental.json.JsonArray;
+
+public interface ExtTokenFieldClientRpc extends ClientRpc
+{
+
+	/**
+	 * replaces all tokens, sent on attach and whenever the client requested a resync
+	 */
+	void setTokens(int version, List<Token> tokens);
+
+	/**
+	 * replaces all tokens like {@link #setTokens(int, List)}, the tokens are encoded by {@link TokenColumns}
+	 */
+	void setTokenColumns(int version, JsonArray columns);
+
+	/**
+	 * applies the operations in order, version is exactly one higher than the version of the previous call
+	 */
+	void applyTokenOperations(int version, List<TokenOperation> operations);
+
+	/**
+	 * lazy mode: replaces all tokens by size not yet loaded tokens, they are requested page by page
+	 */
+	void resetTokens(int version, int size);
+
+	/**
+	 * lazy mode: provides the tokens starting at offset, requested by {@link ExtTokenFieldServerRpc#requestTokens}
+	 */
+	void setTokenPage(int version, int offset, List<Token> tokens);
+
+	/**
+	 * client side suggestions: replaces the catalog of suggested tokens, encoded by {@link TokenColumns}. It is sent
+	 * on attach and whenever the catalog was replaced, version is increased then.
+	 */
+	void setSuggestionCatalog(int version, JsonArray columns);
+
+	/**
+	 * paste input: answers {@link ExtTokenFieldServerRpc#resolvePastedValues}, the client sends the next batch then
+	 */
+	void pastedValuesResolved(int pasteId, int resolvedCount, List<String> unresolvedValues);
+
+}
@@ -18,21 +18,95 @@
 
 package com.explicatis.ext_token_field.shared;
 
+import java.util.List;
+
 import com.explicatis.ext_token_field.ExtTokenField;
 import com.explicatis.ext_token_field.client.ExtTokenFieldWidget;
+import com.explicatis.ext_token_field.client.TokenInteractionQueue;
 import com.vaadin.client.communication.RpcProxy;
 import com.vaadin.client.communication.StateChangeEvent;
 import com.vaadin.client.ui.AbstractFieldConnector;
 import com.vaadin.shared.ui.Connect;
 
+import elemental.json.JsonArray;
+
 @Connect(ExtTokenField.class)
 public class ExtTokenFieldConnector extends AbstractFieldConnector
 {
 
-	private ExtTokenFieldServerRpc serverRpc = RpcProxy.create(ExtTokenFieldServerRpc.class, this);
+	private ExtTokenFieldServerRpc	serverRpc				= RpcProxy.create(ExtTokenFieldServerRpc.class, this);
+	private int						tokenVersion			= 0;
+	private boolean					isResyncRequested		= false;
 
 	public ExtTokenFieldConnector()
 	{
+		registerRpc(ExtTokenFieldClientRpc.class, new ExtTokenFieldClientRpc()
+		{
+
+			@Override
+			public void setTokens(int version, List<Token> tokens)
+			{
+				tokenVersion = version;
+				isResyncRequested = false;
+				getWidget().updateTokens(tokens);
+			}
+
+			@Override
+			public void setTokenColumns(int version, JsonArray columns)
+			{
+				tokenVersion = version;
+				isResyncRequested = false;
+				getWidget().updateTokens(new TokenColumns(columns));
+			}
+
+			@Override
+			public void applyTokenOperations(int version, List<TokenOperation> operations)
+			{
+				if (isResyncRequested)
+				{
+					return;
+				}
+
+				if (version != tokenVersion + 1)
+				{
+					isResyncRequested = true;
+					serverRpc.resyncTokens();
+					return;
+				}
+
+				tokenVersion = version;
+				getWidget().applyTokenOperations(operations);
+			}
+
+			@Override
+			public void resetTokens(int version, int size)
+			{
+				tokenVersion = version;
+				isResyncRequested = false;
+				getWidget().resetTokens(size);
+			}
+
+			@Override
+			public void setTokenPage(int version, int offset, List<Token> tokens)
+			{
+				if (version == tokenVersion)
+				{
+					getWidget().setTokenPage(offset, tokens);
+				}
+			}
+
+			@Override
+			public void setSuggestionCatalog(int version, JsonArray columns)
+			{
+				getWidget().setSuggestionCatalog(version, new TokenColumns(columns));
+			}
+
+			@Override
+			public void pastedValuesResolved(int pasteId, int resolvedCount, List<String> unresolvedValues)
+			{
+				getWidget().pastedValuesResolved(pasteId, resolvedCount, unresolvedValues);
+			}
+		});
 	}
 
 	@Override
@@ -45,6 +119,14 @@ public class ExtTokenFieldConnector extends AbstractFieldConnector
 	protected void init()
 	{
 		getWidget().setServerRpc(serverRpc);
+		getWidget().setTokenInteractionQueue(new TokenInteractionQueue(serverRpc));
+	}
+
+	@Override
+	public void onUnregister()
+	{
+		getWidget().getTokenInteractionQueue().flush();
+		super.onUnregister();
 	}
 
 	@Override
@@ -69,6 +151,13 @@ public class ExtTokenFieldConnector extends AbstractFieldConnector
 		}
 
 		getWidget().setReadOnly(isReadOnly());
-		getWidget().updateTokens(getState().tokens);
+
+		boolean tokenRenderingChanged = stateChangeEvent.hasPropertyChanged("tokenActions") || stateChangeEvent.hasPropertyChanged("readOnly")
+				|| stateChangeEvent.hasPropertyChanged("enabled") || stateChangeEvent.hasPropertyChanged("tokenDragAndDropEnabled")
+				|| stateChangeEvent.hasPropertyChanged("resources");
+		if (tokenRenderingChanged)
+		{
+			getWidget().refreshTokens();
+		}
 	}
 }
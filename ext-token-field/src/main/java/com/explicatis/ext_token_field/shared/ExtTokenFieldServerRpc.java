@@ -18,13 +18,32 @@
 
 package com.explicatis.ext_token_field.shared;
 
+import java.util.List;
+
 import com.vaadin.shared.communication.ServerRpc;
 
 public interface ExtTokenFieldServerRpc extends ServerRpc
 {
 
-	void tokenActionClicked(Token token, TokenAction tokenAction);
+	/**
+	 * applies the interactions of the user in order, they are coalesced by the client within a short window
+	 */
+	void applyTokenInteractions(List<TokenInteraction> interactions);
+
+	/**
+	 * requests a full snapshot of the tokens, because the client missed a version
+	 */
+	void resyncTokens();
+
+	/**
+	 * lazy mode: requests the tokens of the given range
+	 */
+	void requestTokens(int offset, int limit);
 
-	void tokenDroped(Token sourceToken, Token targetToken, DropTargetType type);
+	/**
+	 * paste input: resolves a batch of the values split from the pasted text, last is true for the last batch of a
+	 * paste
+	 */
+	void resolvePastedValues(int pasteId, List<String> values, boolean last);
 
 }
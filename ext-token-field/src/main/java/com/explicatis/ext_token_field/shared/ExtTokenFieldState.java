@@ -19,8 +19,6 @@
 package com.explicatis.ext_token_field.shared;
 
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
 import com.vaadin.shared.AbstractFieldState;
@@ -34,9 +32,30 @@ public class ExtTokenFieldState extends AbstractFieldState
 	public Connector		inputField;
 	@DelegateToWidget
 	public Connector		inputButton;
-	public List<Token>		tokens					= new LinkedList<Token>();
 	@DelegateToWidget
-	public Set<TokenAction>	tokenActions			= new HashSet<TokenAction>();
+	public Set<TokenAction>	tokenActions				= new HashSet<TokenAction>();
 	@DelegateToWidget
-	public boolean			tokenDragAndDropEnabled	= false;
+	public boolean			tokenDragAndDropEnabled		= false;
+	@DelegateToWidget
+	public boolean			virtualRenderingEnabled		= false;
+	@DelegateToWidget
+	public boolean			optimisticUpdatesEnabled	= false;
+	@DelegateToWidget
+	public boolean			clientSuggestionsEnabled	= false;
+	@DelegateToWidget
+	public int				clientSuggestionLimit		= 10;
+	@DelegateToWidget
+	public boolean			pasteInputEnabled			= false;
+	@DelegateToWidget
+	public String			pasteDelimiters				= ",;\n\r\t";
+	@DelegateToWidget
+	public int				pasteBatchSize				= 500;
+	@DelegateToWidget
+	public int				pasteMaxValues				= 100000;
+	@DelegateToWidget
+	public String			pasteProgressText			= "{0} / {1} checked, {2} found";
+	@DelegateToWidget
+	public String			pasteUnresolvedText			= "{0} of {1} not found";
+	@DelegateToWidget
+	public String			pasteLimitText				= "{0} over the limit of {1} values";
 }
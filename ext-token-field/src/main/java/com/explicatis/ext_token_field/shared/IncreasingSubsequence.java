@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.shared;
+
+/**
+ * Longest increasing subsequence of positions, which finds the elements already in the new order, so a reorder moves
+ * only the others. Used by the server side token diff and by the widget.
+ */
+public final class IncreasingSubsequence
+{
+
+	private IncreasingSubsequence()
+	{
+	}
+
+	/**
+	 * @return the values of one longest strictly increasing subsequence
+	 */
+	public static int[] longest(int[] values)
+	{
+		// tails[l] is the index of the smallest tail of all increasing subsequences of length l + 1
+		int[] tails = new int[values.length];
+		int[] predecessors = new int[values.length];
+		int length = 0;
+		for (int i = 0; i < values.length; i++)
+		{
+			int low = 0;
+			int high = length;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (values[tails[middle]] < values[i])
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			predecessors[i] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = i;
+			if (low == length)
+			{
+				length++;
+			}
+		}
+
+		int[] result = new int[length];
+		for (int i = length - 1, k = length > 0 ? tails[length - 1] : -1; i >= 0; i--, k = predecessors[k])
+		{
+			result[i] = values[k];
+		}
+		return result;
+	}
+}
@@ -23,18 +23,22 @@ import java.io.Serializable;
 public class Token implements Serializable
 {
 
-	public Long		id;
+	public long		id;
 	public String	value;
 
 	@Override
 	public boolean equals(Object obj)
 	{
-		if (obj != null)
+		if (obj instanceof Token)
 		{
-			Token other = (Token) obj;
-			if (this.id != null)
-				return this.id.equals(other.id);
+			return this.id == ((Token) obj).id;
 		}
 		return false;
 	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int) (id ^ (id >>> 32));
+	}
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.shared;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+
+/**
+ * Compact wire encoding of a list of tokens as parallel columns, so the field names are not repeated per token.
+ *
+ * The encoding is a JSON array of the ids and the values. If values repeat, they are stored once in a dictionary and
+ * the values column contains indexes into it: <code>[ids, values]</code> or <code>[ids, dictionary, indexes]</code>.
+ * It is passed through the RPC as raw JSON, so the client reads single tokens from the columns without decoding all
+ * of them.
+ */
+public class TokenColumns
+{
+
+	private final JsonArray	ids;
+	private final JsonArray	values;
+	private final JsonArray	indexes;
+
+	public TokenColumns(JsonArray columns)
+	{
+		this.ids = columns.getArray(0);
+		this.values = columns.getArray(1);
+		this.indexes = columns.length() > 2 ? columns.getArray(2) : null;
+	}
+
+	public static JsonArray encode(List<Token> tokens)
+	{
+		JsonArray ids = Json.createArray();
+		JsonArray values = Json.createArray();
+		JsonArray dictionary = Json.createArray();
+		JsonArray indexes = Json.createArray();
+		Map<String, Integer> dictionaryIndexes = new HashMap<>();
+
+		for (int i = 0; i < tokens.size(); i++)
+		{
+			Token token = tokens.get(i);
+			String value = token.value != null ? token.value : "";
+			ids.set(i, token.id);
+			values.set(i, value);
+
+			Integer index = dictionaryIndexes.get(value);
+			if (index == null)
+			{
+				index = dictionary.length();
+				dictionaryIndexes.put(value, index);
+				dictionary.set(index, value);
+			}
+			indexes.set(i, index);
+		}
+
+		JsonArray columns = Json.createArray();
+		columns.set(0, ids);
+		if (dictionary.length() < tokens.size() / 2)
+		{
+			columns.set(1, dictionary);
+			columns.set(2, indexes);
+		}
+		else
+		{
+			columns.set(1, values);
+		}
+		return columns;
+	}
+
+	public int size()
+	{
+		return ids.length();
+	}
+
+	public long getId(int index)
+	{
+		return (long) ids.getNumber(index);
+	}
+
+	public String getValue(int index)
+	{
+		if (indexes != null)
+		{
+			return values.getString((int) indexes.getNumber(index));
+		}
+		return values.getString(index);
+	}
+
+	public Token toToken(int index)
+	{
+		Token result = new Token();
+		result.id = getId(index);
+		result.value = getValue(index);
+		return result;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.shared;
+
+import java.io.Serializable;
+
+/**
+ * One interaction of the user with a token, sent from the client to the server in a batch. Only ids are sent, the
+ * server looks up tokens and actions itself.
+ *
+ * ACTION_CLICKED carries the {@link #actionIdentifier}, DROPPED the {@link #targetTokenId} and the
+ * {@link #dropTargetType}, SUGGESTION_CHOSEN the id of a token of the client side suggestion catalog. An
+ * {@link #optimistic} interaction was already applied by the client. The server confirms it by the regular delta, only
+ * if it rejects the interaction, it sends a snapshot.
+ */
+public class TokenInteraction implements Serializable
+{
+
+	public TokenInteractionType	type;
+	public long					tokenId;
+	public String				actionIdentifier;
+	public long					targetTokenId;
+	public DropTargetType		dropTargetType;
+	public boolean				optimistic;
+
+	public static TokenInteraction actionClicked(long tokenId, String actionIdentifier)
+	{
+		TokenInteraction result = new TokenInteraction();
+		result.type = TokenInteractionType.ACTION_CLICKED;
+		result.tokenId = tokenId;
+		result.actionIdentifier = actionIdentifier;
+		return result;
+	}
+
+	public static TokenInteraction dropped(long sourceTokenId, long targetTokenId, DropTargetType dropTargetType)
+	{
+		TokenInteraction result = new TokenInteraction();
+		result.type = TokenInteractionType.DROPPED;
+		result.tokenId = sourceTokenId;
+		result.targetTokenId = targetTokenId;
+		result.dropTargetType = dropTargetType;
+		return result;
+	}
+
+	public static TokenInteraction suggestionChosen(long tokenId)
+	{
+		TokenInteraction result = new TokenInteraction();
+		result.type = TokenInteractionType.SUGGESTION_CHOSEN;
+		result.tokenId = tokenId;
+		return result;
+	}
+}
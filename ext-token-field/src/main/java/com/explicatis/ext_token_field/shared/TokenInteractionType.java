@@ -0,0 +1,6 @@
+package com.explicatis.ext_token_field.shared;
+
+public enum TokenInteractionType
+{
+	ACTION_CLICKED, DROPPED, SUGGESTION_CHOSEN
+};
\ No newline at end of file
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.shared;
+
+import java.io.Serializable;
+
+/**
+ * One change of the ordered token list, sent from the server to the client as part of a versioned delta.
+ *
+ * INSERT and MOVE place the token before the token with {@link #beforeTokenId} or at the end, if it is null. INSERT and
+ * RELABEL carry the new {@link #value}.
+ */
+public class TokenOperation implements Serializable
+{
+
+	public TokenOperationType	type;
+	public long					tokenId;
+	public String				value;
+	public Long					beforeTokenId;
+
+	public static TokenOperation insert(Token token, Long beforeTokenId)
+	{
+		TokenOperation result = new TokenOperation();
+		result.type = TokenOperationType.INSERT;
+		result.tokenId = token.id;
+		result.value = token.value;
+		result.beforeTokenId = beforeTokenId;
+		return result;
+	}
+
+	public static TokenOperation remove(long tokenId)
+	{
+		TokenOperation result = new TokenOperation();
+		result.type = TokenOperationType.REMOVE;
+		result.tokenId = tokenId;
+		return result;
+	}
+
+	public static TokenOperation move(long tokenId, Long beforeTokenId)
+	{
+		TokenOperation result = new TokenOperation();
+		result.type = TokenOperationType.MOVE;
+		result.tokenId = tokenId;
+		result.beforeTokenId = beforeTokenId;
+		return result;
+	}
+
+	public static TokenOperation relabel(Token token)
+	{
+		TokenOperation result = new TokenOperation();
+		result.type = TokenOperationType.RELABEL;
+		result.tokenId = token.id;
+		result.value = token.value;
+		return result;
+	}
+
+	public Token toToken()
+	{
+		Token result = new Token();
+		result.id = tokenId;
+		result.value = value;
+		return result;
+	}
+}
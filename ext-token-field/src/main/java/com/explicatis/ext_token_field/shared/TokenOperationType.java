@@ -0,0 +1,6 @@
+package com.explicatis.ext_token_field.shared;
+
+public enum TokenOperationType
+{
+	INSERT, REMOVE, MOVE, RELABEL
+};
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+import com.explicatis.ext_token_field.Tokenizable;
+
+/**
+ * Bounded cache of suggestions in front of a slow index, e.g. one querying a catalog back end, to be shared by all
+ * sessions.
+ *
+ * The suggestions are cached per filter, lower case and without surrounding blanks, and per version of the index.
+ * Least recently used entries are evicted beyond the maximum size and entries are evicted after their time to live.
+ * Concurrent queries of the same filter wait for one query of the index. The cached suggestions are not filtered, the
+ * excluded tokenizables of a session are skipped when they are read. If too many of them are excluded, the index is
+ * queried directly.
+ *
+ * The cached suggestions are not serialized. A deserialized session, e.g. after a restart or a failover to another
+ * node, would get a cache of its own, unless the cache is registered by {@link #share(String)}. Then it is resolved to
+ * the cache registered under the same name in the deserializing application.
+ */
+public class CachingSuggestionIndex<T extends Tokenizable> implements TokenizableSuggestionIndex<T>
+{
+
+	public static final int										DEFAULT_CACHED_SUGGESTIONS	= 100;
+	private static final Map<String, CachingSuggestionIndex<?>>	SHARED						= new ConcurrentHashMap<>();
+
+	private final TokenizableSuggestionIndex<T>					index;
+	private final int											maxSize;
+	private final long											timeToLiveNanos;
+	private final int											cachedSuggestions;
+	private final LongAdder										hits						= new LongAdder();
+	private final LongAdder										misses						= new LongAdder();
+	private final LongAdder										evictions					= new LongAdder();
+	private volatile String										sharedName;
+	private transient Map<Key, Entry<T>>						entries;
+
+	public CachingSuggestionIndex(TokenizableSuggestionIndex<T> index, int maxSize, Duration timeToLive)
+	{
+		this(index, maxSize, timeToLive, DEFAULT_CACHED_SUGGESTIONS);
+	}
+
+	/**
+	 * @param cachedSuggestions
+	 *            the number of suggestions cached per filter, queries with a larger limit are not cached
+	 */
+	public CachingSuggestionIndex(TokenizableSuggestionIndex<T> index, int maxSize, Duration timeToLive, int cachedSuggestions)
+	{
+		this.index = Objects.requireNonNull(index, () -> "index must not be null");
+		if (maxSize < 1 || cachedSuggestions < 1 || timeToLive.isNegative() || timeToLive.isZero())
+		{
+			throw new IllegalArgumentException("maxSize, cachedSuggestions and timeToLive must be positive");
+		}
+		this.maxSize = maxSize;
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.cachedSuggestions = cachedSuggestions;
+		this.entries = createEntries();
+	}
+
+	private Map<Key, Entry<T>> createEntries()
+	{
+		return new LinkedHashMap<Key, Entry<T>>(16, 0.75f, true)
+		{
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry<T>> eldest)
+			{
+				if (size() > maxSize)
+				{
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * registers the cache under the name, so sessions deserialized in this application share it again
+	 * 
+	 * @return this cache or the one already registered under the name, which should be used instead
+	 */
+	@SuppressWarnings("unchecked")
+	public CachingSuggestionIndex<T> share(String name)
+	{
+		Objects.requireNonNull(name, () -> "name must not be null");
+		CachingSuggestionIndex<?> registered = SHARED.putIfAbsent(name, this);
+		if (registered != null)
+		{
+			return (CachingSuggestionIndex<T>) registered;
+		}
+		sharedName = name;
+		return this;
+	}
+
+	public TokenizableSuggestionIndex<T> getIndex()
+	{
+		return index;
+	}
+
+	@Override
+	public long getVersion()
+	{
+		return index.getVersion();
+	}
+
+	@Override
+	public List<T> suggest(String filter, int limit, LongPredicate excluded)
+	{
+		if (limit > cachedSuggestions)
+		{
+			return index.suggest(filter, limit, excluded);
+		}
+
+		List<T> suggestions = getSuggestions(PrefixSuggestionIndex.normalize(filter));
+		List<T> result = new ArrayList<>(Math.min(limit, suggestions.size()));
+		for (int i = 0; i < suggestions.size() && result.size() < limit; i++)
+		{
+			T tokenizable = suggestions.get(i);
+			if (!excluded.test(tokenizable.getIdentifier()))
+			{
+				result.add(tokenizable);
+			}
+		}
+
+		// more matches may follow the cached ones, if too many of them were excluded
+		if (result.size() < limit && suggestions.size() == cachedSuggestions)
+		{
+			return index.suggest(filter, limit, excluded);
+		}
+		return result;
+	}
+
+	private List<T> getSuggestions(String filter)
+	{
+		Key key = new Key(filter, index.getVersion());
+		long now = System.nanoTime();
+
+		CompletableFuture<List<T>> future;
+		boolean isLoading = false;
+		synchronized (entries)
+		{
+			Entry<T> entry = entries.get(key);
+			if (entry == null || now - entry.created > timeToLiveNanos)
+			{
+				if (entry != null)
+				{
+					evictions.increment();
+				}
+				entry = new Entry<>(now);
+				entries.put(key, entry);
+				isLoading = true;
+				misses.increment();
+			}
+			else
+			{
+				hits.increment();
+			}
+			future = entry.suggestions;
+		}
+
+		if (isLoading)
+		{
+			load(key, future);
+		}
+
+		try
+		{
+			return future.join();
+		}
+		catch (CompletionException e)
+		{
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+	}
+
+	private void load(Key key, CompletableFuture<List<T>> future)
+	{
+		try
+		{
+			future.complete(Collections.unmodifiableList(new ArrayList<>(index.suggest(key.filter, cachedSuggestions))));
+		}
+		catch (RuntimeException | Error e)
+		{
+			synchronized (entries)
+			{
+				Entry<T> entry = entries.get(key);
+				if (entry != null && entry.suggestions == future)
+				{
+					entries.remove(key);
+				}
+			}
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * evicts all cached suggestions
+	 */
+	public void invalidateAll()
+	{
+		synchronized (entries)
+		{
+			evictions.add(entries.size());
+			entries.clear();
+		}
+	}
+
+	public int size()
+	{
+		synchronized (entries)
+		{
+			return entries.size();
+		}
+	}
+
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+
+	public long getEvictionCount()
+	{
+		return evictions.sum();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		entries = createEntries();
+	}
+
+	private Object readResolve()
+	{
+		if (sharedName == null)
+		{
+			return this;
+		}
+		CachingSuggestionIndex<?> registered = SHARED.putIfAbsent(sharedName, this);
+		return registered != null ? registered : this;
+	}
+
+	private static class Key
+	{
+
+		final String	filter;
+		final long		version;
+
+		Key(String filter, long version)
+		{
+			this.filter = filter;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key) obj;
+			return version == other.version && filter.equals(other.filter);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * filter.hashCode() + Long.hashCode(version);
+		}
+	}
+
+	private static class Entry<T>
+	{
+
+		final long							created;
+		final CompletableFuture<List<T>>	suggestions	= new CompletableFuture<>();
+
+		Entry(long created)
+		{
+			this.created = created;
+		}
+	}
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import com.explicatis.ext_token_field.SimpleTokenizable;
+import com.explicatis.ext_token_field.Tokenizable;
+
+/**
+ * Index of a catalog stored in a file, which is read through a {@link MappedByteBuffer}, so the catalog is not kept
+ * on the heap and opening it costs next to nothing. The pages of the file are loaded by the operating system on
+ * access and shared by all sessions and all JVMs on the host. Suited for catalogs of millions of tokenizables.
+ *
+ * The file contains the arrays of a {@link PrefixSuggestionIndex}, so matching and ranking are the same. It is
+ * written by {@link #write(Path, Collection)}, before the index is opened. The suggestions are
+ * {@link SimpleTokenizable}s of the stored identifiers and string values.
+ *
+ * A rebuilt catalog atomically replaces the file and is read after {@link #reload()}. Queries running meanwhile
+ * finish on the previous file, it is unmapped, when it is no longer referenced.
+ */
+public class MappedSuggestionIndex implements TokenizableSuggestionIndex<SimpleTokenizable>
+{
+
+	private static final int				MAGIC				= 0x45544653;
+	private static final int				FORMAT_VERSION		= 1;
+	private static final int				HEADER_SIZE			= 6 * Integer.BYTES;
+	/**
+	 * the number of keys per block, the best rank of every block is stored, so blocks can be skipped by a query
+	 */
+	private static final int				BLOCK_SIZE			= 256;
+	private static final int				RANK_ORDER_SHIFT	= 31;
+	private static final long				BLOCK_MASK			= (1L << RANK_ORDER_SHIFT) - 1;
+
+	private final String					path;
+	private volatile long					version;
+	private transient volatile MappedCatalog	catalog;
+
+	/**
+	 * maps the file written by {@link #write(Path, Collection)}
+	 */
+	public MappedSuggestionIndex(Path file) throws IOException
+	{
+		this.path = file.toAbsolutePath().toString();
+		this.catalog = new MappedCatalog(file);
+	}
+
+	/**
+	 * Writes the catalog to a temporary file next to the given one, which replaces it by an atomic move. Indexes of
+	 * the file still read the previous catalog until they are reloaded.
+	 *
+	 * @param catalog
+	 *            the tokenizables to suggest, ties are ranked in this order
+	 */
+	public static void write(Path file, Collection<? extends Tokenizable> catalog) throws IOException
+	{
+		PrefixSuggestionIndex<Tokenizable> index = new PrefixSuggestionIndex<>(catalog);
+		int entryCount = index.identifiers.length;
+		int keyCount = index.keys.length;
+		long[] blockRanks = new long[(keyCount + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		Arrays.fill(blockRanks, Long.MAX_VALUE);
+		for (int k = 0; k < keyCount; k++)
+		{
+			blockRanks[k / BLOCK_SIZE] = Math.min(blockRanks[k / BLOCK_SIZE], index.keyRanks[k]);
+		}
+
+		int[] displayStarts = new int[entryCount + 1];
+		for (int i = 0; i < entryCount; i++)
+		{
+			displayStarts[i + 1] = displayStarts[i] + getDisplayValue(index.tokenizables.get(i)).length();
+		}
+
+		long size = HEADER_SIZE + (long) Long.BYTES * (entryCount + keyCount + blockRanks.length) + (long) Integer.BYTES * (2 * (entryCount + 1) + keyCount)
+				+ (long) Character.BYTES * (index.text.length + displayStarts[entryCount]);
+		if (size > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("the catalog is too large for a mapped file: " + size + " bytes");
+		}
+
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile), 1 << 16)))
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(entryCount);
+				out.writeInt(keyCount);
+				out.writeInt(index.text.length);
+				out.writeInt(displayStarts[entryCount]);
+
+				writeLongs(out, index.identifiers);
+				writeLongs(out, index.keyRanks);
+				writeLongs(out, blockRanks);
+				writeInts(out, index.starts);
+				writeInts(out, index.keys);
+				writeInts(out, displayStarts);
+				for (char c : index.text)
+				{
+					out.writeChar(c);
+				}
+				for (Tokenizable tokenizable : index.tokenizables)
+				{
+					out.writeChars(getDisplayValue(tokenizable));
+				}
+			}
+			Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private static String getDisplayValue(Tokenizable tokenizable)
+	{
+		return tokenizable.getStringValue() != null ? tokenizable.getStringValue() : "";
+	}
+
+	private static void writeLongs(DataOutputStream out, long[] values) throws IOException
+	{
+		for (long value : values)
+		{
+			out.writeLong(value);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException
+	{
+		for (int value : values)
+		{
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * maps the current file, e.g. after it was replaced by {@link #write(Path, Collection)}, and increases the version
+	 */
+	public synchronized void reload() throws IOException
+	{
+		catalog = new MappedCatalog(getFile());
+		version++;
+	}
+
+	/**
+	 * writes the catalog to the file and reloads it
+	 */
+	public synchronized void replace(Collection<? extends Tokenizable> catalog) throws IOException
+	{
+		write(getFile(), catalog);
+		reload();
+	}
+
+	public Path getFile()
+	{
+		return Paths.get(path);
+	}
+
+	public int size()
+	{
+		return catalog.entryCount;
+	}
+
+	@Override
+	public long getVersion()
+	{
+		return version;
+	}
+
+	@Override
+	public List<SimpleTokenizable> suggest(String filter, int limit, LongPredicate excluded)
+	{
+		MappedCatalog current = catalog;
+		String prefix = PrefixSuggestionIndex.normalize(filter);
+		if (limit <= 0 || current.entryCount == 0)
+		{
+			return Collections.emptyList();
+		}
+		if (prefix.isEmpty())
+		{
+			return current.getFirst(limit, excluded);
+		}
+
+		int from = current.lowerBound(prefix, 0);
+		int to = current.lowerBound(prefix, 1);
+		RankedSelection selection = new RankedSelection(Math.min(limit, to - from));
+		int firstBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int endBlock = to / BLOCK_SIZE;
+		if (firstBlock >= endBlock)
+		{
+			current.select(from, to, prefix, excluded, selection);
+		}
+		else
+		{
+			current.select(from, firstBlock * BLOCK_SIZE, prefix, excluded, selection);
+			current.select(endBlock * BLOCK_SIZE, to, prefix, excluded, selection);
+			selectBlocks(current, firstBlock, endBlock, prefix, excluded, selection);
+		}
+
+		long[] ranks = selection.toSortedArray();
+		List<SimpleTokenizable> result = new ArrayList<>(ranks.length);
+		for (long rank : ranks)
+		{
+			result.add(current.getTokenizable((int) (rank & PrefixSuggestionIndex.TOKENIZABLE_MASK)));
+		}
+		return result;
+	}
+
+	/**
+	 * Scans the whole blocks in the order of their best rank, until the best rank of the next block cannot beat the
+	 * selected keys. The blocks are sorted by the start match and length part of the best rank only, which is enough
+	 * to stop early, so the block number fits into the sorted longs.
+	 */
+	private static void selectBlocks(MappedCatalog catalog, int firstBlock, int endBlock, String prefix, LongPredicate excluded, RankedSelection selection)
+	{
+		long[] blocks = new long[endBlock - firstBlock];
+		for (int i = 0; i < blocks.length; i++)
+		{
+			blocks[i] = catalog.blockRanks.get(firstBlock + i) >>> RANK_ORDER_SHIFT << RANK_ORDER_SHIFT | (firstBlock + i);
+		}
+		Arrays.sort(blocks);
+
+		for (long block : blocks)
+		{
+			if (selection.isRejected(block & ~BLOCK_MASK))
+			{
+				return;
+			}
+			int from = (int) (block & BLOCK_MASK) * BLOCK_SIZE;
+			if (!selection.isRejected(catalog.blockRanks.get(from / BLOCK_SIZE)))
+			{
+				catalog.select(from, from + BLOCK_SIZE, prefix, excluded, selection);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		catalog = new MappedCatalog(getFile());
+	}
+
+	/**
+	 * Read only views of the sections of one mapped file. Only absolute reads are used, so the views are shared by
+	 * concurrent queries.
+	 */
+	private static class MappedCatalog
+	{
+
+		final int			entryCount;
+		final LongBuffer	identifiers;
+		final LongBuffer	keyRanks;
+		final LongBuffer	blockRanks;
+		final IntBuffer		starts;
+		final IntBuffer		keys;
+		final IntBuffer		displayStarts;
+		final CharBuffer	text;
+		final CharBuffer	display;
+
+		MappedCatalog(Path file) throws IOException
+		{
+			MappedByteBuffer buffer;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+			{
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+
+			if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION)
+			{
+				throw new IOException("not a suggestion catalog of format version " + FORMAT_VERSION + ": " + file);
+			}
+			entryCount = buffer.getInt(2 * Integer.BYTES);
+			int keyCount = buffer.getInt(3 * Integer.BYTES);
+			int textLength = buffer.getInt(4 * Integer.BYTES);
+			int displayLength = buffer.getInt(5 * Integer.BYTES);
+
+			buffer.position(HEADER_SIZE);
+			identifiers = slice(buffer, entryCount * Long.BYTES).asLongBuffer();
+			keyRanks = slice(buffer, keyCount * Long.BYTES).asLongBuffer();
+			blockRanks = slice(buffer, (keyCount + BLOCK_SIZE - 1) / BLOCK_SIZE * Long.BYTES).asLongBuffer();
+			starts = slice(buffer, (entryCount + 1) * Integer.BYTES).asIntBuffer();
+			keys = slice(buffer, keyCount * Integer.BYTES).asIntBuffer();
+			displayStarts = slice(buffer, (entryCount + 1) * Integer.BYTES).asIntBuffer();
+			text = slice(buffer, textLength * Character.BYTES).asCharBuffer();
+			display = slice(buffer, displayLength * Character.BYTES).asCharBuffer();
+		}
+
+		/**
+		 * @return the next length bytes of the buffer, which is advanced behind them
+		 */
+		private static ByteBuffer slice(ByteBuffer buffer, int length)
+		{
+			ByteBuffer result = buffer.slice();
+			result.limit(length);
+			buffer.position(buffer.position() + length);
+			return result;
+		}
+
+		/**
+		 * offers the keys of the range to the selection, like {@link PrefixSuggestionIndex} does
+		 */
+		void select(int from, int to, String prefix, LongPredicate excluded, RankedSelection selection)
+		{
+			for (int k = from; k < to; k++)
+			{
+				long rank = keyRanks.get(k);
+				int entry = (int) (rank & PrefixSuggestionIndex.TOKENIZABLE_MASK);
+				if (!selection.isRejected(rank) && !excluded.test(identifiers.get(entry))
+						&& (rank < PrefixSuggestionIndex.WORD_MATCH || !hasPreviousMatch(entry, keys.get(k), prefix)))
+				{
+					selection.offer(rank);
+				}
+			}
+		}
+
+		SimpleTokenizable getTokenizable(int entry)
+		{
+			int start = displayStarts.get(entry);
+			int end = displayStarts.get(entry + 1);
+			char[] value = new char[end - start];
+			for (int i = 0; i < value.length; i++)
+			{
+				value[i] = display.get(start + i);
+			}
+			return new SimpleTokenizable(identifiers.get(entry), new String(value));
+		}
+
+		List<SimpleTokenizable> getFirst(int limit, LongPredicate excluded)
+		{
+			List<SimpleTokenizable> result = new ArrayList<>(Math.min(limit, entryCount));
+			for (int i = 0; i < entryCount && result.size() < limit; i++)
+			{
+				if (!excluded.test(identifiers.get(i)))
+				{
+					result.add(getTokenizable(i));
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * like {@link PrefixSuggestionIndex}, the index of the first key whose text compared to the prefix is not
+		 * smaller than the order
+		 */
+		int lowerBound(String prefix, int order)
+		{
+			int low = 0;
+			int high = keys.limit();
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (Integer.signum(compareToPrefix(keys.get(middle), prefix)) < order)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		private int compareToPrefix(int offset, String prefix)
+		{
+			for (int i = 0; i < prefix.length(); i++)
+			{
+				int difference = text.get(offset + i) - prefix.charAt(i);
+				if (difference != 0)
+				{
+					return difference;
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * like {@link PrefixSuggestionIndex}, an entry is only ranked by its first key matching the prefix
+		 */
+		boolean hasPreviousMatch(int entry, int offset, String prefix)
+		{
+			int start = starts.get(entry);
+			for (int position = start; position < offset; position++)
+			{
+				if (isKey(start, position) && compareToPrefix(position, prefix) == 0)
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean isKey(int start, int position)
+		{
+			return position == start || Character.isLetterOrDigit(text.get(position)) && !Character.isLetterOrDigit(text.get(position - 1));
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.util.Arrays;
+
+/**
+ * Smallest edit distance of a query to any prefix of a text, which is the distance of a filter typed so far.
+ *
+ * Queries of up to 64 chars are matched by the bit parallel algorithm of Myers, which computes one column of the
+ * distance matrix per text char in a few word operations. Longer queries use the plain dynamic program.
+ */
+class PrefixEditDistance
+{
+
+	private static final int	MAX_BIT_PARALLEL_LENGTH	= 64;
+
+	private final String		query;
+	private final long[]		asciiMatches			= new long[128];
+	private final char[]		otherChars;
+	private final long[]		otherMatches;
+	private final long			lastRow;
+
+	PrefixEditDistance(String query)
+	{
+		this.query = query;
+		this.lastRow = query.isEmpty() ? 0 : 1L << (Math.min(query.length(), MAX_BIT_PARALLEL_LENGTH) - 1);
+
+		char[] others = new char[0];
+		long[] masks = new long[0];
+		for (int i = 0; i < Math.min(query.length(), MAX_BIT_PARALLEL_LENGTH); i++)
+		{
+			char c = query.charAt(i);
+			if (c < asciiMatches.length)
+			{
+				asciiMatches[c] |= 1L << i;
+				continue;
+			}
+
+			int index = indexOf(others, c);
+			if (index < 0)
+			{
+				index = others.length;
+				others = Arrays.copyOf(others, index + 1);
+				masks = Arrays.copyOf(masks, index + 1);
+				others[index] = c;
+			}
+			masks[index] |= 1L << i;
+		}
+		this.otherChars = others;
+		this.otherMatches = masks;
+	}
+
+	/**
+	 * @return the smallest edit distance of the query to a prefix of the text beginning at the start, or
+	 *         maxDistance + 1 if it is larger than maxDistance
+	 */
+	public int distance(String text, int start, int maxDistance)
+	{
+		int columns = Math.min(text.length() - start, query.length() + maxDistance);
+		int result = query.length() > MAX_BIT_PARALLEL_LENGTH ? distanceByTable(text, start, columns) : distanceByBits(text, start, columns);
+		return Math.min(result, maxDistance + 1);
+	}
+
+	private int distanceByBits(String text, int start, int columns)
+	{
+		long positive = lastRow == 0 ? 0 : lastRow | (lastRow - 1);
+		long negative = 0;
+		int score = query.length();
+		int result = score;
+
+		for (int j = 0; j < columns && result > 0; j++)
+		{
+			long matches = getMatches(text.charAt(start + j));
+			long vertical = matches | negative;
+			long horizontal = (((matches & positive) + positive) ^ positive) | matches;
+			long horizontalPositive = negative | ~(horizontal | positive);
+			long horizontalNegative = positive & horizontal;
+
+			if ((horizontalPositive & lastRow) != 0)
+			{
+				score++;
+			}
+			else if ((horizontalNegative & lastRow) != 0)
+			{
+				score--;
+			}
+			result = Math.min(result, score);
+
+			// the first row grows by one per column, as the prefix has to start at the start
+			horizontalPositive = horizontalPositive << 1 | 1;
+			horizontalNegative <<= 1;
+			positive = horizontalNegative | ~(vertical | horizontalPositive);
+			negative = horizontalPositive & vertical;
+		}
+		return result;
+	}
+
+	private int distanceByTable(String text, int start, int columns)
+	{
+		int[] previous = new int[columns + 1];
+		int[] current = new int[columns + 1];
+		for (int j = 0; j <= columns; j++)
+		{
+			previous[j] = j;
+		}
+
+		for (int i = 1; i <= query.length(); i++)
+		{
+			current[0] = i;
+			for (int j = 1; j <= columns; j++)
+			{
+				int substitution = previous[j - 1] + (query.charAt(i - 1) == text.charAt(start + j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+			}
+
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		int result = previous[0];
+		for (int j = 1; j <= columns; j++)
+		{
+			result = Math.min(result, previous[j]);
+		}
+		return result;
+	}
+
+	private long getMatches(char c)
+	{
+		if (c < asciiMatches.length)
+		{
+			return asciiMatches[c];
+		}
+		int index = indexOf(otherChars, c);
+		return index >= 0 ? otherMatches[index] : 0;
+	}
+
+	private static int indexOf(char[] chars, char c)
+	{
+		for (int i = 0; i < chars.length; i++)
+		{
+			if (chars[i] == c)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongPredicate;
+
+import com.explicatis.ext_token_field.Tokenizable;
+
+/**
+ * Immutable index, which suggests the tokenizables whose string value or one of its words starts with the filter.
+ * Matching ignores case.
+ *
+ * All string values are stored lower case in one char array, separated by a zero char. The keys are the offsets of
+ * the words in this array, sorted by the text following them. So the keys matching a prefix are one range, which is
+ * found by binary search, and no string is kept per key. Within the range, matches at the start of the value rank
+ * before matches of a later word, then shorter values before longer ones and then the order of the catalog.
+ */
+public class PrefixSuggestionIndex<T extends Tokenizable> implements TokenizableSuggestionIndex<T>
+{
+
+	private static final char	SEPARATOR					= '\0';
+	static final long			WORD_MATCH					= 1L << 62;
+	static final long			TOKENIZABLE_MASK			= (1L << 31) - 1;
+	private static final int	INSERTION_SORT_THRESHOLD	= 12;
+
+	/**
+	 * the arrays are written to a file by {@link MappedSuggestionIndex#write}
+	 */
+	final List<T>				tokenizables;
+	final long[]				identifiers;
+	final char[]				text;
+	final int[]					starts;
+	final int[]					keys;
+	final long[]				keyRanks;
+
+	/**
+	 * @param catalog
+	 *            the tokenizables to suggest, ties are ranked in this order
+	 */
+	public PrefixSuggestionIndex(Collection<? extends T> catalog)
+	{
+		tokenizables = new ArrayList<>(catalog);
+		identifiers = new long[tokenizables.size()];
+		starts = new int[tokenizables.size() + 1];
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < tokenizables.size(); i++)
+		{
+			identifiers[i] = tokenizables.get(i).getIdentifier();
+			starts[i] = builder.length();
+			builder.append(normalize(tokenizables.get(i).getStringValue())).append(SEPARATOR);
+		}
+		starts[tokenizables.size()] = builder.length();
+
+		text = new char[builder.length()];
+		builder.getChars(0, builder.length(), text, 0);
+
+		int[] offsets = new int[Math.max(16, tokenizables.size())];
+		int keyCount = 0;
+		for (int i = 0; i < tokenizables.size(); i++)
+		{
+			for (int position = starts[i]; position < starts[i + 1] - 1; position++)
+			{
+				if (isKey(i, position))
+				{
+					if (keyCount == offsets.length)
+					{
+						offsets = Arrays.copyOf(offsets, offsets.length * 2);
+					}
+					offsets[keyCount++] = position;
+				}
+			}
+		}
+		keys = sortKeys(offsets, keyCount);
+
+		keyRanks = new long[keys.length];
+		for (int k = 0; k < keys.length; k++)
+		{
+			int position = Arrays.binarySearch(starts, keys[k]);
+			int tokenizable = position >= 0 ? position : -position - 2;
+			keyRanks[k] = rank(position >= 0, starts[tokenizable + 1] - starts[tokenizable] - 1, tokenizable);
+		}
+	}
+
+	public int size()
+	{
+		return tokenizables.size();
+	}
+
+	@Override
+	public List<T> suggest(String filter, int limit, LongPredicate excluded)
+	{
+		String prefix = normalize(filter);
+		if (limit <= 0 || tokenizables.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+		if (prefix.isEmpty())
+		{
+			return getFirst(limit, excluded);
+		}
+
+		int from = lowerBound(prefix, 0);
+		int to = lowerBound(prefix, 1);
+		RankedSelection selection = new RankedSelection(Math.min(limit, to - from));
+		for (int k = from; k < to; k++)
+		{
+			long rank = keyRanks[k];
+			int tokenizable = (int) (rank & TOKENIZABLE_MASK);
+			if (!selection.isRejected(rank) && !excluded.test(identifiers[tokenizable])
+					&& (rank < WORD_MATCH || !hasPreviousMatch(tokenizable, keys[k], prefix)))
+			{
+				selection.offer(rank);
+			}
+		}
+
+		return toTokenizables(selection.toSortedArray());
+	}
+
+	private List<T> getFirst(int limit, LongPredicate excluded)
+	{
+		List<T> result = new ArrayList<>(Math.min(limit, tokenizables.size()));
+		for (int i = 0; i < tokenizables.size() && result.size() < limit; i++)
+		{
+			if (!excluded.test(identifiers[i]))
+			{
+				result.add(tokenizables.get(i));
+			}
+		}
+		return result;
+	}
+
+	private List<T> toTokenizables(long[] ranks)
+	{
+		List<T> result = new ArrayList<>(ranks.length);
+		for (long rank : ranks)
+		{
+			result.add(tokenizables.get((int) (rank & TOKENIZABLE_MASK)));
+		}
+		return result;
+	}
+
+	/**
+	 * the rank of a key orders by start match first, then by length and then by position in the catalog
+	 */
+	private static long rank(boolean isValueStart, int length, int tokenizable)
+	{
+		return (isValueStart ? 0L : WORD_MATCH) | (long) length << 31 | tokenizable;
+	}
+
+	/**
+	 * a tokenizable is only ranked once, by its first word matching the prefix
+	 */
+	private boolean hasPreviousMatch(int tokenizable, int offset, String prefix)
+	{
+		for (int position = starts[tokenizable]; position < offset; position++)
+		{
+			if (isKey(tokenizable, position) && compareToPrefix(position, prefix) == 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the index of the first key, whose text compared to the prefix is not smaller than the given order, so 0
+	 *         finds the first key starting with the prefix and 1 the first key after them
+	 */
+	private int lowerBound(String prefix, int order)
+	{
+		int low = 0;
+		int high = keys.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (Integer.signum(compareToPrefix(keys[middle], prefix)) < order)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return 0, if the text at the offset starts with the prefix, otherwise the order of the text and the prefix
+	 */
+	private int compareToPrefix(int offset, String prefix)
+	{
+		for (int i = 0; i < prefix.length(); i++)
+		{
+			int difference = text[offset + i] - prefix.charAt(i);
+			if (difference != 0)
+			{
+				return difference;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * sorts the keys by their text with a three way radix quicksort, which compares every char only once per level
+	 */
+	private int[] sortKeys(int[] offsets, int count)
+	{
+		int[] result = Arrays.copyOf(offsets, count);
+		sortKeys(result, 0, count, 0);
+		return result;
+	}
+
+	private void sortKeys(int[] keys, int from, int to, int depth)
+	{
+		while (to - from > INSERTION_SORT_THRESHOLD)
+		{
+			char pivot = text[keys[(from + to) >>> 1] + depth];
+			int less = from;
+			int greater = to;
+			int i = from;
+			while (i < greater)
+			{
+				char c = text[keys[i] + depth];
+				if (c < pivot)
+				{
+					swap(keys, less++, i++);
+				}
+				else if (c > pivot)
+				{
+					swap(keys, i, --greater);
+				}
+				else
+				{
+					i++;
+				}
+			}
+
+			sortKeys(keys, from, less, depth);
+			sortKeys(keys, greater, to, depth);
+			if (pivot == SEPARATOR)
+			{
+				return;
+			}
+			from = less;
+			to = greater;
+			depth++;
+		}
+
+		for (int i = from + 1; i < to; i++)
+		{
+			for (int j = i; j > from && compareTexts(keys[j - 1], keys[j], depth) > 0; j--)
+			{
+				swap(keys, j - 1, j);
+			}
+		}
+	}
+
+	private static void swap(int[] keys, int first, int second)
+	{
+		int key = keys[first];
+		keys[first] = keys[second];
+		keys[second] = key;
+	}
+
+	private int compareTexts(int first, int second, int depth)
+	{
+		for (int i = depth;; i++)
+		{
+			char a = text[first + i];
+			char b = text[second + i];
+			if (a != b)
+			{
+				return a - b;
+			}
+			if (a == SEPARATOR)
+			{
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * the start of a value and every word start following a non letter or digit is a key
+	 */
+	private boolean isKey(int tokenizable, int position)
+	{
+		return position == starts[tokenizable] || Character.isLetterOrDigit(text[position]) && !Character.isLetterOrDigit(text[position - 1]);
+	}
+
+	static String normalize(String value)
+	{
+		return value == null ? "" : value.trim().toLowerCase(Locale.ROOT).replace(SEPARATOR, ' ');
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the smallest ranks offered to it, at most a fixed number of them.
+ *
+ * A rank is a primitive long, smaller is better. The ranks are kept in a bounded max heap, so the worst kept rank is
+ * at the root and an offer is O(log k).
+ */
+class RankedSelection
+{
+
+	private final long[]	heap;
+	private int				size;
+
+	RankedSelection(int limit)
+	{
+		this.heap = new long[limit];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isFull()
+	{
+		return size == heap.length;
+	}
+
+	/**
+	 * @return the worst kept rank, only defined if the selection is not empty
+	 */
+	public long getWorst()
+	{
+		return heap[0];
+	}
+
+	/**
+	 * @return true, if the selection is full and the rank is not better than the worst kept one
+	 */
+	public boolean isRejected(long rank)
+	{
+		return size == heap.length && (size == 0 || rank >= heap[0]);
+	}
+
+	public void offer(long rank)
+	{
+		if (isRejected(rank))
+		{
+			return;
+		}
+
+		if (size < heap.length)
+		{
+			int index = size++;
+			while (index > 0)
+			{
+				int parent = (index - 1) >>> 1;
+				if (heap[parent] >= rank)
+				{
+					break;
+				}
+				heap[index] = heap[parent];
+				index = parent;
+			}
+			heap[index] = rank;
+		}
+		else
+		{
+			int index = 0;
+			while (true)
+			{
+				int child = 2 * index + 1;
+				if (child >= size)
+				{
+					break;
+				}
+				if (child + 1 < size && heap[child + 1] > heap[child])
+				{
+					child++;
+				}
+				if (heap[child] <= rank)
+				{
+					break;
+				}
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = rank;
+		}
+	}
+
+	/**
+	 * @return the kept ranks, best first
+	 */
+	public long[] toSortedArray()
+	{
+		long[] result = Arrays.copyOf(heap, size);
+		Arrays.sort(result);
+		return result;
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import com.explicatis.ext_token_field.Tokenizable;
+
+/**
+ * Searchable catalog of tokenizables, which can be suggested to the user. An index is not bound to a session, so one
+ * instance can be shared by all fields using the same catalog.
+ */
+public interface TokenizableSuggestionIndex<T extends Tokenizable> extends Serializable
+{
+
+	/**
+	 * @return at most limit tokenizables matching the filter, the best match first
+	 */
+	default List<T> suggest(String filter, int limit)
+	{
+		return suggest(filter, limit, identifier -> false);
+	}
+
+	/**
+	 * @param excluded
+	 *            tests the identifiers of the candidates, the excluded ones are skipped during the search, so they do
+	 *            not take the place of other matches
+	 * @return at most limit tokenizables matching the filter and not excluded, the best match first
+	 */
+	List<T> suggest(String filter, int limit, LongPredicate excluded);
+
+	/**
+	 * @return a number, which changes whenever the catalog changes, so results of an older version are outdated
+	 */
+	default long getVersion()
+	{
+		return 0;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import com.explicatis.ext_token_field.ExtTokenField;
+import com.explicatis.ext_token_field.Tokenizable;
+import com.vaadin.data.provider.AbstractBackEndDataProvider;
+import com.vaadin.data.provider.Query;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.ComboBox;
+
+/**
+ * Data provider for the input {@link ComboBox} of an {@link ExtTokenField}, which shows the best suggestions of a
+ * {@link TokenizableSuggestionIndex} for the typed text.
+ *
+ * <pre>
+ * comboBox.setDataProvider(new TokenizableSuggestionProvider&lt;&gt;(catalog));
+ * </pre>
+ *
+ * At most {@link #getMaxSuggestions()} items are shown. The suggestions of the last filter are kept, so the size and
+ * the pages of one filter are computed once. Use one provider per combo box, the index can be shared. If a token
+ * field is set, its selected tokenizables are not suggested.
+ */
+public class TokenizableSuggestionProvider<T extends Tokenizable> extends AbstractBackEndDataProvider<T, String>
+{
+
+	public static final int					DEFAULT_MAX_SUGGESTIONS	= 50;
+
+	private TokenizableSuggestionIndex<T>	index;
+	private int								maxSuggestions			= DEFAULT_MAX_SUGGESTIONS;
+	private ExtTokenField					tokenField;
+	private Registration					tokenFieldRegistration;
+	private transient String				lastFilter;
+	private transient List<T>				lastSuggestions;
+
+	/**
+	 * suggests the tokenizables of the catalog by a {@link PrefixSuggestionIndex}
+	 */
+	public TokenizableSuggestionProvider(Collection<? extends T> catalog)
+	{
+		this(new PrefixSuggestionIndex<T>(catalog));
+	}
+
+	public TokenizableSuggestionProvider(TokenizableSuggestionIndex<T> index)
+	{
+		this.index = Objects.requireNonNull(index, () -> "index must not be null");
+	}
+
+	public TokenizableSuggestionIndex<T> getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * replaces the index, e.g. after the catalog was rebuilt
+	 */
+	public void setIndex(TokenizableSuggestionIndex<T> index)
+	{
+		this.index = Objects.requireNonNull(index, () -> "index must not be null");
+		refreshAll();
+	}
+
+	public ExtTokenField getTokenField()
+	{
+		return tokenField;
+	}
+
+	/**
+	 * excludes the selected tokenizables of the field from the suggestions, or none if it is null
+	 */
+	public void setTokenField(ExtTokenField tokenField)
+	{
+		if (tokenFieldRegistration != null)
+		{
+			tokenFieldRegistration.remove();
+			tokenFieldRegistration = null;
+		}
+
+		this.tokenField = tokenField;
+		if (tokenField != null)
+		{
+			tokenFieldRegistration = tokenField.addValueChangeListener(event -> refreshAll());
+		}
+		refreshAll();
+	}
+
+	public int getMaxSuggestions()
+	{
+		return maxSuggestions;
+	}
+
+	public void setMaxSuggestions(int maxSuggestions)
+	{
+		if (maxSuggestions < 0)
+		{
+			throw new IllegalArgumentException("maxSuggestions must not be negative");
+		}
+		this.maxSuggestions = maxSuggestions;
+		refreshAll();
+	}
+
+	@Override
+	public void refreshAll()
+	{
+		lastFilter = null;
+		lastSuggestions = null;
+		super.refreshAll();
+	}
+
+	@Override
+	public Object getId(T item)
+	{
+		return item.getIdentifier();
+	}
+
+	@Override
+	protected Stream<T> fetchFromBackEnd(Query<T, String> query)
+	{
+		List<T> suggestions = getSuggestions(query.getFilter().orElse(""));
+		int from = Math.min(query.getOffset(), suggestions.size());
+		int to = from + Math.min(query.getLimit(), suggestions.size() - from);
+		return suggestions.subList(from, to).stream();
+	}
+
+	@Override
+	protected int sizeInBackEnd(Query<T, String> query)
+	{
+		return getSuggestions(query.getFilter().orElse("")).size();
+	}
+
+	protected List<T> getSuggestions(String filter)
+	{
+		if (lastSuggestions == null || !filter.equals(lastFilter))
+		{
+			if (tokenField != null)
+			{
+				lastSuggestions = index.suggest(filter, maxSuggestions, tokenField::containsIdentifier);
+			}
+			else
+			{
+				lastSuggestions = index.suggest(filter, maxSuggestions);
+			}
+			lastFilter = filter;
+		}
+		return lastSuggestions;
+	}
+}
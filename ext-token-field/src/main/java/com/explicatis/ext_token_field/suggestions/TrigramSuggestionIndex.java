@@ -0,0 +1,567 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+import com.explicatis.ext_token_field.Tokenizable;
+
+/**
+ * Typo tolerant index, which suggests the tokenizables whose string value or one of its words starts with the filter
+ * within a bounded edit distance. Matching ignores case.
+ *
+ * Every value is split into trigrams, each word padded by two leading and one trailing blank. A query looks up the
+ * postings of its own trigrams and counts the shared trigrams per candidate. As one edit destroys at most three
+ * trigrams, only candidates sharing enough trigrams are verified by a banded edit distance of the filter to the prefix
+ * of each word. A short filter, whose trigrams could all be destroyed by the tolerated edits, is verified against all
+ * values instead. Matches rank by distance, then start match, then length and then position in the index. The
+ * number of verified candidates sharing trigrams is bounded by {@link #setMaxCandidates(int)}.
+ *
+ * The index can be changed incrementally and is safe for concurrent use, so one instance can be shared and kept up to
+ * date with the catalog.
+ */
+public class TrigramSuggestionIndex<T extends Tokenizable> implements TokenizableSuggestionIndex<T>
+{
+
+	public static final int					DEFAULT_MAX_EDITS		= 2;
+	public static final int					DEFAULT_MAX_CANDIDATES	= 2048;
+
+	private static final int				SLOT_BITS				= 31;
+	private static final int				LENGTH_BITS				= 26;
+	private static final long				SLOT_MASK				= (1L << SLOT_BITS) - 1;
+	private static final long				WORD_MATCH				= 1L << (SLOT_BITS + LENGTH_BITS);
+	private static final int				DISTANCE_SHIFT			= SLOT_BITS + LENGTH_BITS + 1;
+	private static final int				LENGTH_GROUPS			= 64;
+
+	private final ReadWriteLock				lock					= new ReentrantReadWriteLock();
+	private final List<T>					tokenizables			= new ArrayList<>();
+	private final List<String>				values					= new ArrayList<>();
+	private final Map<Long, Integer>		slots					= new HashMap<>();
+	private final Map<Long, Postings>		postings				= new HashMap<>();
+	private final Postings					freeSlots				= new Postings();
+	private int[]							lengths					= new int[16];
+	private volatile int					maxEdits				= DEFAULT_MAX_EDITS;
+	private volatile long					version;
+	private volatile int					maxCandidates			= DEFAULT_MAX_CANDIDATES;
+	private transient Queue<int[]>			countArrays				= new ConcurrentLinkedQueue<>();
+
+	public TrigramSuggestionIndex()
+	{
+	}
+
+	public TrigramSuggestionIndex(Collection<? extends T> catalog)
+	{
+		addAll(catalog);
+	}
+
+	public int size()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return slots.size();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public long getVersion()
+	{
+		return version;
+	}
+
+	public int getMaxEdits()
+	{
+		return maxEdits;
+	}
+
+	/**
+	 * Sets the edit distance tolerated for long filters. Filters of up to two chars are matched exactly and of up to
+	 * five chars with one edit at most.
+	 */
+	public void setMaxEdits(int maxEdits)
+	{
+		if (maxEdits < 0 || maxEdits > 3)
+		{
+			throw new IllegalArgumentException("maxEdits must be between 0 and 3");
+		}
+		this.maxEdits = maxEdits;
+	}
+
+	public int getMaxCandidates()
+	{
+		return maxCandidates;
+	}
+
+	/**
+	 * Sets the number of candidates verified by edit distance per query at most, which bounds the latency of filters
+	 * matching a large part of the catalog. The candidates sharing the most trigrams and the shortest ones are verified
+	 * first. The values sharing no trigram with a short filter are not bounded.
+	 */
+	public void setMaxCandidates(int maxCandidates)
+	{
+		if (maxCandidates < 1)
+		{
+			throw new IllegalArgumentException("maxCandidates must be positive");
+		}
+		this.maxCandidates = maxCandidates;
+	}
+
+	/**
+	 * adds the tokenizable or replaces the one with the same identifier
+	 */
+	public void add(T tokenizable)
+	{
+		addAll(Collections.singleton(tokenizable));
+	}
+
+	public void addAll(Collection<? extends T> catalog)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (T tokenizable : catalog)
+			{
+				Integer slot = slots.get(tokenizable.getIdentifier());
+				if (slot != null)
+				{
+					unindex(slot);
+				}
+				else
+				{
+					slot = allocateSlot();
+					slots.put(tokenizable.getIdentifier(), slot);
+				}
+
+				String value = normalize(tokenizable.getStringValue());
+				tokenizables.set(slot, tokenizable);
+				values.set(slot, value);
+				lengths[slot] = value.length();
+				for (long trigram : trigrams(value, true))
+				{
+					postings.computeIfAbsent(trigram, key -> new Postings()).add(slot);
+				}
+			}
+			version++;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return true, if a tokenizable with the given identifier was removed
+	 */
+	public boolean remove(long identifier)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			Integer slot = slots.remove(identifier);
+			if (slot == null)
+			{
+				return false;
+			}
+
+			unindex(slot);
+			tokenizables.set(slot, null);
+			values.set(slot, null);
+			freeSlots.add(slot);
+			version++;
+			return true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			tokenizables.clear();
+			values.clear();
+			slots.clear();
+			postings.clear();
+			freeSlots.clear();
+			countArrays.clear();
+			version++;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int allocateSlot()
+	{
+		if (freeSlots.size > 0)
+		{
+			return freeSlots.slots[--freeSlots.size];
+		}
+		tokenizables.add(null);
+		values.add(null);
+		if (lengths.length < tokenizables.size())
+		{
+			lengths = Arrays.copyOf(lengths, lengths.length * 2);
+		}
+		return tokenizables.size() - 1;
+	}
+
+	private void unindex(int slot)
+	{
+		for (long trigram : trigrams(values.get(slot), true))
+		{
+			Postings trigramPostings = postings.get(trigram);
+			trigramPostings.remove(slot);
+			if (trigramPostings.size == 0)
+			{
+				postings.remove(trigram);
+			}
+		}
+	}
+
+	@Override
+	public List<T> suggest(String filter, int limit, LongPredicate excluded)
+	{
+		String query = normalize(filter);
+		if (limit <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		lock.readLock().lock();
+		try
+		{
+			if (query.isEmpty())
+			{
+				return getFirst(limit, excluded);
+			}
+
+			int edits = getEditsFor(query);
+			long[] queryTrigrams = trigrams(query, false);
+			int minShared = Math.max(1, queryTrigrams.length - 3 * edits);
+
+			int[] counts = countArrays.poll();
+			if (counts == null || counts.length < tokenizables.size())
+			{
+				counts = new int[tokenizables.size() + tokenizables.size() / 2];
+			}
+
+			Postings candidates = new Postings();
+			for (long trigram : queryTrigrams)
+			{
+				Postings trigramPostings = postings.get(trigram);
+				if (trigramPostings == null)
+				{
+					continue;
+				}
+				for (int i = 0; i < trigramPostings.size; i++)
+				{
+					int slot = trigramPostings.slots[i];
+					if (counts[slot]++ == 0)
+					{
+						candidates.add(slot);
+					}
+				}
+			}
+
+			// orders the candidates by missing trigrams and length, which bound their rank from below, so whole groups
+			// are skipped as soon as they cannot beat the selected matches
+			int maxMissing = queryTrigrams.length - minShared;
+			int[] groupStarts = new int[(maxMissing + 1) * LENGTH_GROUPS + 1];
+			int[] groups = new int[candidates.size];
+			int candidateCount = 0;
+			for (int i = 0; i < candidates.size; i++)
+			{
+				int slot = candidates.slots[i];
+				int missing = queryTrigrams.length - counts[slot];
+				groups[i] = missing <= maxMissing ? missing * LENGTH_GROUPS + Math.min(lengths[slot], LENGTH_GROUPS - 1) : -1;
+				if (groups[i] >= 0)
+				{
+					groupStarts[groups[i] + 1]++;
+					candidateCount++;
+				}
+			}
+			for (int group = 1; group < groupStarts.length; group++)
+			{
+				groupStarts[group] += groupStarts[group - 1];
+			}
+			int[] ordered = new int[candidateCount];
+			int[] next = Arrays.copyOf(groupStarts, groupStarts.length - 1);
+			for (int i = 0; i < candidates.size; i++)
+			{
+				if (groups[i] >= 0)
+				{
+					ordered[next[groups[i]]++] = candidates.slots[i];
+				}
+			}
+
+			PrefixEditDistance distance = new PrefixEditDistance(query);
+			RankedSelection selection = new RankedSelection(Math.min(limit, slots.size()));
+			int verifications = maxCandidates;
+			for (int group = 0; group < groupStarts.length - 1 && verifications > 0; group++)
+			{
+				int minDistance = (group / LENGTH_GROUPS + 2) / 3;
+				if (selection.isFull() && selection.isRejected(rank(minDistance, true, group % LENGTH_GROUPS, 0)))
+				{
+					continue;
+				}
+				for (int i = groupStarts[group]; i < groupStarts[group + 1] && verifications > 0; i++)
+				{
+					verifications -= verify(selection, ordered[i], minDistance, distance, edits, excluded);
+				}
+			}
+
+			// the edits may destroy all trigrams of a short filter, so the values sharing none are verified as well,
+			// unless the selected matches are closer than any of them can be. They are all scanned regardless of the
+			// candidate budget, which would otherwise only reach the values added first.
+			int minDistance = (queryTrigrams.length + 2) / 3;
+			if (queryTrigrams.length <= 3 * edits && !(selection.isFull() && selection.isRejected(rank(minDistance, true, 0, 0))))
+			{
+				for (int slot = 0; slot < values.size(); slot++)
+				{
+					if (counts[slot] == 0 && values.get(slot) != null)
+					{
+						verify(selection, slot, minDistance, distance, edits, excluded);
+					}
+				}
+			}
+
+			for (int i = 0; i < candidates.size; i++)
+			{
+				counts[candidates.slots[i]] = 0;
+			}
+			countArrays.offer(counts);
+
+			List<T> result = new ArrayList<>(selection.size());
+			for (long rank : selection.toSortedArray())
+			{
+				result.add(tokenizables.get((int) (rank & SLOT_MASK)));
+			}
+			return result;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		countArrays = new ConcurrentLinkedQueue<>();
+	}
+
+	/**
+	 * @return 1, if the candidate was verified by edit distance, or 0, if it was skipped
+	 */
+	private int verify(RankedSelection selection, int slot, int minDistance, PrefixEditDistance distance, int edits, LongPredicate excluded)
+	{
+		if (selection.isRejected(rank(minDistance, true, lengths[slot], slot)) || excluded.test(tokenizables.get(slot).getIdentifier()))
+		{
+			return 0;
+		}
+		offer(selection, slot, distance, selection.isFull() ? Math.min(edits, getDistance(selection.getWorst())) : edits);
+		return 1;
+	}
+
+	private int getEditsFor(String query)
+	{
+		if (query.length() <= 2)
+		{
+			return 0;
+		}
+		return query.length() <= 5 ? Math.min(1, maxEdits) : maxEdits;
+	}
+
+	private static int getDistance(long rank)
+	{
+		return (int) (rank >>> DISTANCE_SHIFT);
+	}
+
+	/**
+	 * verifies the candidate against the filter at the start of the value and of every following word
+	 */
+	private void offer(RankedSelection selection, int slot, PrefixEditDistance distance, int edits)
+	{
+		String value = values.get(slot);
+		int best = edits + 1;
+		boolean isValueStart = false;
+
+		int start = 0;
+		while (best > 0)
+		{
+			int wordDistance = distance.distance(value, start, best - 1);
+			if (wordDistance < best)
+			{
+				best = wordDistance;
+				isValueStart = start == 0;
+			}
+
+			int blank = value.indexOf(' ', start);
+			if (blank < 0)
+			{
+				break;
+			}
+			start = blank + 1;
+		}
+
+		if (best <= edits)
+		{
+			selection.offer(rank(best, isValueStart, value.length(), slot));
+		}
+	}
+
+	/**
+	 * the rank orders by distance first, then by start match, then by length and then by slot
+	 */
+	private static long rank(int distance, boolean isValueStart, int length, int slot)
+	{
+		long boundedLength = Math.min(length, (1 << LENGTH_BITS) - 1);
+		return (long) distance << DISTANCE_SHIFT | (isValueStart ? 0L : WORD_MATCH) | boundedLength << SLOT_BITS | slot;
+	}
+
+	private List<T> getFirst(int limit, LongPredicate excluded)
+	{
+		List<T> result = new ArrayList<>();
+		for (int slot = 0; slot < tokenizables.size() && result.size() < limit; slot++)
+		{
+			T tokenizable = tokenizables.get(slot);
+			if (tokenizable != null && !excluded.test(tokenizable.getIdentifier()))
+			{
+				result.add(tokenizable);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param isComplete
+	 *            a value is padded at the end of every word, a filter only between its words, as its last word may
+	 *            be incomplete
+	 * @return the distinct trigrams of the words, each packed into a long
+	 */
+	static long[] trigrams(String value, boolean isComplete)
+	{
+		String[] words = value.split(" ");
+		long[] result = new long[value.length() + 2 * words.length];
+		int count = 0;
+
+		for (int w = 0; w < words.length; w++)
+		{
+			String padded = "  " + words[w] + (isComplete || w < words.length - 1 ? " " : "");
+			for (int i = 0; i + 3 <= padded.length(); i++)
+			{
+				result[count++] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+			}
+		}
+
+		long[] sorted = Arrays.copyOf(result, count);
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++)
+		{
+			if (i == 0 || sorted[i] != sorted[i - 1])
+			{
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, distinct);
+	}
+
+	/**
+	 * lower case with all non letters or digits collapsed into single blanks
+	 */
+	static String normalize(String value)
+	{
+		String result = PrefixSuggestionIndex.normalize(value);
+		StringBuilder builder = new StringBuilder(result.length());
+		for (int i = 0; i < result.length(); i++)
+		{
+			char c = result.charAt(i);
+			if (Character.isLetterOrDigit(c))
+			{
+				builder.append(c);
+			}
+			else if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ' ')
+			{
+				builder.append(' ');
+			}
+		}
+		int length = builder.length();
+		return length > 0 && builder.charAt(length - 1) == ' ' ? builder.substring(0, length - 1) : builder.toString();
+	}
+
+	/**
+	 * unordered growable list of slots
+	 */
+	private static class Postings implements Serializable
+	{
+
+		int[]	slots	= new int[4];
+		int		size;
+
+		void add(int slot)
+		{
+			if (size == slots.length)
+			{
+				slots = Arrays.copyOf(slots, size * 2);
+			}
+			slots[size++] = slot;
+		}
+
+		void remove(int slot)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (slots[i] == slot)
+				{
+					slots[i] = slots[--size];
+					return;
+				}
+			}
+		}
+
+		void clear()
+		{
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.vaadin.data.provider.ListDataProvider;
+import com.vaadin.data.provider.Query;
+import com.vaadin.server.SerializablePredicate;
+
+public class LazyTokenSourceTest
+{
+
+	@Test
+	public void sequentialScanFetchesEachPageOnce()
+	{
+		int size = 3 * LazyTokenSource.PAGE_SIZE + 7;
+		CountingDataProvider dataProvider = new CountingDataProvider(size);
+		LazyTokenizableList list = new LazyTokenizableList(new LazyTokenSource<>(dataProvider, 50));
+
+		long identifier = 0;
+		for (Tokenizable tokenizable : list)
+		{
+			assertEquals(identifier++, tokenizable.getIdentifier());
+		}
+
+		assertEquals(size, identifier);
+		assertEquals(4, dataProvider.fetches);
+	}
+
+	@Test
+	public void resetFetchesThePageAgain()
+	{
+		CountingDataProvider dataProvider = new CountingDataProvider(10);
+		LazyTokenSource<SimpleTokenizable, SerializablePredicate<SimpleTokenizable>> source = new LazyTokenSource<>(dataProvider, 50);
+
+		source.get(0);
+		source.get(9);
+		source.reset();
+		source.get(0);
+
+		assertEquals(2, dataProvider.fetches);
+	}
+
+	private static class CountingDataProvider extends ListDataProvider<SimpleTokenizable>
+	{
+
+		int fetches;
+
+		CountingDataProvider(int size)
+		{
+			super(createTokenizables(size));
+		}
+
+		private static List<SimpleTokenizable> createTokenizables(int size)
+		{
+			List<SimpleTokenizable> result = new ArrayList<>(size);
+			for (int i = 0; i < size; i++)
+			{
+				result.add(new SimpleTokenizable(i, "token " + i));
+			}
+			return result;
+		}
+
+		@Override
+		public Stream<SimpleTokenizable> fetch(Query<SimpleTokenizable, SerializablePredicate<SimpleTokenizable>> query)
+		{
+			fetches++;
+			return super.fetch(query);
+		}
+	}
+}
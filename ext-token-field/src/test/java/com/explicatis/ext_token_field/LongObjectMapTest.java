@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongObjectMapTest
+{
+
+	@Test
+	public void randomChangesMatchHashMap()
+	{
+		Random random = new Random(40);
+		LongObjectMap<String> map = new LongObjectMap<>();
+		Map<Long, String> expected = new HashMap<>();
+
+		for (int i = 0; i < 20000; i++)
+		{
+			// a small key range causes long probe sequences and many removals of present keys
+			long key = random.nextInt(200) - 100;
+			if (random.nextInt(3) == 0)
+			{
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else
+			{
+				String value = "value " + i;
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (long key = -100; key < 100; key++)
+		{
+			assertEquals(expected.get(key), map.get(key));
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+		}
+	}
+
+	@Test
+	public void removalsWrapAroundTheEndOfTheTable()
+	{
+		// at most half of the minimal table of 8 slots is used, the keys all start probing in the last slot
+		List<Long> keys = getKeysOfSlot(7, 8, 4);
+		LongObjectMap<Long> map = new LongObjectMap<>();
+		for (Long key : keys)
+		{
+			map.put(key, key);
+		}
+
+		// the entries in the first slots are shifted back across the end of the table
+		assertEquals(keys.get(0), map.remove(keys.get(0)));
+		for (Long key : keys.subList(1, keys.size()))
+		{
+			assertEquals(key, map.get(key));
+		}
+
+		assertEquals(keys.get(2), map.remove(keys.get(2)));
+		assertEquals(keys.get(1), map.get(keys.get(1)));
+		assertEquals(keys.get(3), map.get(keys.get(3)));
+		assertNull(map.get(keys.get(0)));
+		assertNull(map.get(keys.get(2)));
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	public void removalKeepsEntriesOfOtherHomeSlots()
+	{
+		// keys starting in the last slot followed by a key starting in the first slot, which must not be shifted
+		// before its home slot
+		List<Long> last = getKeysOfSlot(7, 8, 2);
+		List<Long> first = getKeysOfSlot(0, 8, 1);
+		LongObjectMap<Long> map = new LongObjectMap<>();
+		map.put(last.get(0), last.get(0));
+		map.put(first.get(0), first.get(0));
+		map.put(last.get(1), last.get(1));
+
+		map.remove(last.get(0));
+
+		assertEquals(first.get(0), map.get(first.get(0)));
+		assertEquals(last.get(1), map.get(last.get(1)));
+		assertFalse(map.containsKey(last.get(0)));
+	}
+
+	@Test
+	public void clearEmptiesTheMap()
+	{
+		LongObjectMap<String> map = new LongObjectMap<>();
+		for (long key = 0; key < 100; key++)
+		{
+			map.put(key, "value " + key);
+		}
+
+		map.clear();
+
+		assertTrue(map.isEmpty());
+		assertNull(map.get(5));
+		map.put(5, "again");
+		assertEquals("again", map.get(5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullValuesAreRejected()
+	{
+		new LongObjectMap<String>().put(1, null);
+	}
+
+	private static List<Long> getKeysOfSlot(int slot, int capacity, int count)
+	{
+		List<Long> result = new ArrayList<>(count);
+		for (long key = 0; result.size() < count; key++)
+		{
+			if ((LongObjectMap.hash(key) & (capacity - 1)) == slot)
+			{
+				result.add(key);
+			}
+		}
+		return result;
+	}
+}
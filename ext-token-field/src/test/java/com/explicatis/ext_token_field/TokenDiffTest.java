@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.explicatis.ext_token_field.shared.Token;
+import com.explicatis.ext_token_field.shared.TokenOperation;
+import com.explicatis.ext_token_field.shared.TokenOperationType;
+
+public class TokenDiffTest
+{
+
+	private static final Function<Tokenizable, Token> CONVERTER = tokenizable -> {
+		Token token = new Token();
+		token.id = tokenizable.getIdentifier();
+		token.value = tokenizable.getStringValue();
+		return token;
+	};
+
+	@Test
+	public void randomDiffsReachTheTarget()
+	{
+		Random random = new Random(30);
+		for (int round = 0; round < 300; round++)
+		{
+			List<Tokenizable> current = createTokenizables(random, random.nextInt(40));
+			List<Tokenizable> target = createTokenizables(random, random.nextInt(40));
+			TokenStore store = createStore(current);
+
+			TokenDiff diff = TokenDiff.apply(store, target, CONVERTER);
+
+			assertEquals(target, new ArrayList<>(store.getTokenizables()));
+			assertEquals(getIdentifiers(target), replay(getIdentifiers(current), diff.operations));
+			assertEquals(getMinimalMoveCount(current, target), diff.moved.size());
+		}
+	}
+
+	@Test
+	public void movingOneTokenMovesOne()
+	{
+		List<Tokenizable> current = createTokenizables(0, 1, 2, 3, 4, 5);
+		List<Tokenizable> target = Arrays.asList(current.get(0), current.get(4), current.get(1), current.get(2), current.get(3), current.get(5));
+		TokenStore store = createStore(current);
+
+		TokenDiff diff = TokenDiff.apply(store, target, CONVERTER);
+
+		assertEquals(1, diff.operations.size());
+		assertEquals(TokenOperationType.MOVE, diff.operations.get(0).type);
+		assertEquals(4, diff.operations.get(0).tokenId);
+		assertEquals(target, new ArrayList<>(store.getTokenizables()));
+	}
+
+	@Test
+	public void reversingMovesAllButOne()
+	{
+		List<Tokenizable> current = createTokenizables(0, 1, 2, 3, 4, 5, 6, 7);
+		List<Tokenizable> target = new ArrayList<>(current);
+		Collections.reverse(target);
+		TokenStore store = createStore(current);
+
+		TokenDiff diff = TokenDiff.apply(store, target, CONVERTER);
+
+		assertEquals(7, diff.moved.size());
+		assertEquals(target, new ArrayList<>(store.getTokenizables()));
+	}
+
+	@Test
+	public void changedInstancesAreRelabeled()
+	{
+		List<Tokenizable> current = createTokenizables(0, 1, 2);
+		List<Tokenizable> target = Arrays.asList(current.get(0), new SimpleTokenizable(1, "renamed"), new SimpleTokenizable(2, "token 2"));
+		TokenStore store = createStore(current);
+
+		TokenDiff diff = TokenDiff.apply(store, target, CONVERTER);
+
+		assertEquals(1, diff.operations.size());
+		assertEquals(TokenOperationType.RELABEL, diff.operations.get(0).type);
+		assertEquals("renamed", diff.operations.get(0).value);
+		assertEquals("renamed", store.getToken(1).value);
+		assertSame(target.get(2), store.getTokenizable(2));
+		assertFalse(diff.isEmpty());
+	}
+
+	@Test
+	public void duplicatesAreSkipped()
+	{
+		List<Tokenizable> target = createTokenizables(0, 1, 0, 2, 1);
+		TokenStore store = createStore(Collections.emptyList());
+
+		TokenDiff diff = TokenDiff.apply(store, target, CONVERTER);
+
+		assertEquals(3, diff.added.size());
+		assertEquals(Arrays.asList(0L, 1L, 2L), getIdentifiers(store.getTokenizables()));
+	}
+
+	/**
+	 * applies the operations the way the client does to the identifiers
+	 */
+	private static List<Long> replay(List<Long> identifiers, List<TokenOperation> operations)
+	{
+		List<Long> result = new ArrayList<>(identifiers);
+		for (TokenOperation operation : operations)
+		{
+			switch (operation.type)
+			{
+				case INSERT:
+					result.add(getInsertIndex(result, operation.beforeTokenId), operation.tokenId);
+					break;
+				case REMOVE:
+					result.remove(operation.tokenId);
+					break;
+				case MOVE:
+					result.remove(operation.tokenId);
+					result.add(getInsertIndex(result, operation.beforeTokenId), operation.tokenId);
+					break;
+				default:
+					break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the count of kept tokens, which are not part of a longest subsequence already in the target order
+	 */
+	private static int getMinimalMoveCount(List<Tokenizable> current, List<Tokenizable> target)
+	{
+		List<Long> targetIdentifiers = getIdentifiers(target);
+		List<Integer> targetIndexes = new ArrayList<>();
+		for (Tokenizable tokenizable : current)
+		{
+			int index = targetIdentifiers.indexOf(tokenizable.getIdentifier());
+			if (index >= 0)
+			{
+				targetIndexes.add(index);
+			}
+		}
+
+		int[] lengths = new int[targetIndexes.size()];
+		int longest = 0;
+		for (int i = 0; i < lengths.length; i++)
+		{
+			lengths[i] = 1;
+			for (int j = 0; j < i; j++)
+			{
+				if (targetIndexes.get(j) < targetIndexes.get(i))
+				{
+					lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+				}
+			}
+			longest = Math.max(longest, lengths[i]);
+		}
+		return targetIndexes.size() - longest;
+	}
+
+	private static int getInsertIndex(List<Long> identifiers, Long beforeIdentifier)
+	{
+		return beforeIdentifier != null ? identifiers.indexOf(beforeIdentifier) : identifiers.size();
+	}
+
+	private static List<Long> getIdentifiers(List<Tokenizable> tokenizables)
+	{
+		List<Long> result = new ArrayList<>();
+		for (Tokenizable tokenizable : tokenizables)
+		{
+			result.add(tokenizable.getIdentifier());
+		}
+		return result;
+	}
+
+	private static TokenStore createStore(List<Tokenizable> tokenizables)
+	{
+		TokenStore store = new TokenStore();
+		for (Tokenizable tokenizable : tokenizables)
+		{
+			store.add(tokenizable, CONVERTER.apply(tokenizable));
+		}
+		return store;
+	}
+
+	/**
+	 * @return distinct tokenizables of a small identifier range in random order, so lists share many identifiers
+	 */
+	private static List<Tokenizable> createTokenizables(Random random, int size)
+	{
+		List<Long> identifiers = new ArrayList<>();
+		for (long identifier = 0; identifier < 60; identifier++)
+		{
+			identifiers.add(identifier);
+		}
+		Collections.shuffle(identifiers, random);
+
+		List<Tokenizable> result = new ArrayList<>(size);
+		for (Long identifier : identifiers.subList(0, size))
+		{
+			result.add(new SimpleTokenizable(identifier, "token " + identifier));
+		}
+		return result;
+	}
+
+	private static List<Tokenizable> createTokenizables(long... identifiers)
+	{
+		List<Tokenizable> result = new ArrayList<>(identifiers.length);
+		for (long identifier : identifiers)
+		{
+			result.add(new SimpleTokenizable(identifier, "token " + identifier));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.explicatis.ext_token_field.TokenStore.Entry;
+import com.explicatis.ext_token_field.shared.Token;
+
+public class TokenSequenceTest
+{
+
+	@Test
+	public void ascendingAndDescendingInsertsStayOrdered()
+	{
+		TokenSequence ascending = TokenSequence.EMPTY;
+		TokenSequence descending = TokenSequence.EMPTY;
+		for (int i = 0; i < 1000; i++)
+		{
+			ascending = ascending.with(createEntry(i, i));
+			descending = descending.with(createEntry(999 - i, 999 - i));
+		}
+
+		assertIdentifiers(ascending, 1000);
+		assertIdentifiers(descending, 1000);
+	}
+
+	@Test
+	public void zigZagInsertsStayOrdered()
+	{
+		// keys growing from both ends towards the middle require double rotations
+		TokenSequence sequence = TokenSequence.EMPTY;
+		for (int i = 0; i < 500; i++)
+		{
+			sequence = sequence.with(createEntry(i, i));
+			sequence = sequence.with(createEntry(999 - i, 999 - i));
+		}
+
+		assertIdentifiers(sequence, 1000);
+	}
+
+	@Test
+	public void randomChangesMatchSortedMap()
+	{
+		Random random = new Random(10);
+		TreeMap<Long, Tokenizable> expected = new TreeMap<>();
+		TokenSequence sequence = TokenSequence.EMPTY;
+
+		for (int i = 0; i < 5000; i++)
+		{
+			long position = random.nextInt(2000);
+			if (random.nextInt(3) == 0)
+			{
+				expected.remove(position);
+				sequence = sequence.without(position);
+			}
+			else
+			{
+				Entry entry = createEntry(i, position);
+				expected.put(position, entry.tokenizable);
+				sequence = sequence.with(entry);
+			}
+
+			if (i % 100 == 0)
+			{
+				assertContent(expected, sequence);
+			}
+		}
+		assertContent(expected, sequence);
+	}
+
+	@Test
+	public void changesDoNotAffectPreviousSequences()
+	{
+		Random random = new Random(11);
+		List<TokenSequence> sequences = new ArrayList<>();
+		List<List<Tokenizable>> copies = new ArrayList<>();
+		TokenSequence sequence = TokenSequence.EMPTY;
+
+		for (int i = 0; i < 500; i++)
+		{
+			long position = random.nextInt(300);
+			sequence = random.nextBoolean() ? sequence.with(createEntry(i, position)) : sequence.without(position);
+			sequences.add(sequence);
+			copies.add(new ArrayList<>(sequence));
+		}
+
+		for (int i = 0; i < sequences.size(); i++)
+		{
+			assertEquals(copies.get(i), sequences.get(i));
+		}
+	}
+
+	@Test
+	public void hashCodeIsCachedListHashCode()
+	{
+		List<Entry> entries = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+		{
+			entries.add(createEntry(i, i * TokenStore.POSITION_GAP));
+		}
+		TokenSequence sequence = TokenSequence.of(entries);
+		int hashCode = new ArrayList<>(sequence).hashCode();
+
+		assertEquals(hashCode, sequence.hashCode());
+		assertEquals(hashCode, sequence.hashCode());
+
+		TokenSequence changed = sequence.without(0);
+		assertEquals(new ArrayList<>(changed).hashCode(), changed.hashCode());
+		assertEquals(hashCode, sequence.hashCode());
+		assertFalse(sequence.equals(changed));
+		assertEquals(sequence, TokenSequence.of(entries));
+	}
+
+	@Test
+	public void neighbourKeys()
+	{
+		TokenSequence sequence = TokenSequence.EMPTY.with(createEntry(1, 10)).with(createEntry(2, 20)).with(createEntry(3, 30));
+
+		assertNull(sequence.lowerKey(10));
+		assertEquals(Long.valueOf(10), sequence.lowerKey(20));
+		assertEquals(Long.valueOf(20), sequence.lowerKey(25));
+		assertEquals(Long.valueOf(30), sequence.higherKey(20));
+		assertNull(sequence.higherKey(30));
+		assertEquals(30, sequence.lastKey());
+		assertEquals(2, sequence.getEntryAt(20).tokenizable.getIdentifier());
+		assertNull(sequence.getEntryAt(15));
+	}
+
+	private static void assertIdentifiers(TokenSequence sequence, int size)
+	{
+		assertEquals(size, sequence.size());
+		for (int i = 0; i < size; i++)
+		{
+			assertEquals(i, sequence.get(i).getIdentifier());
+		}
+		int identifier = 0;
+		for (Tokenizable tokenizable : sequence)
+		{
+			assertEquals(identifier++, tokenizable.getIdentifier());
+		}
+	}
+
+	private static void assertContent(TreeMap<Long, Tokenizable> expected, TokenSequence sequence)
+	{
+		assertEquals(new ArrayList<>(expected.values()), sequence);
+		assertEquals(expected.size(), sequence.size());
+
+		int index = 0;
+		for (Map.Entry<Long, Tokenizable> entry : expected.entrySet())
+		{
+			assertEquals(entry.getValue(), sequence.get(index++));
+			assertEquals(entry.getValue(), sequence.getEntryAt(entry.getKey()).tokenizable);
+			assertEquals(expected.lowerKey(entry.getKey()), sequence.lowerKey(entry.getKey()));
+			assertEquals(expected.higherKey(entry.getKey()), sequence.higherKey(entry.getKey()));
+		}
+	}
+
+	private static Entry createEntry(long identifier, long position)
+	{
+		Token token = new Token();
+		token.id = identifier;
+		token.value = "token " + identifier;
+		Entry entry = new Entry(new SimpleTokenizable(identifier, token.value), token);
+		entry.position = position;
+		return entry;
+	}
+}
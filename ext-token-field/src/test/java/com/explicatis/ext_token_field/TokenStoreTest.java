@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.explicatis.ext_token_field.shared.DropTargetType;
+import com.explicatis.ext_token_field.shared.Token;
+
+public class TokenStoreTest
+{
+
+	@Test
+	public void insertsBeforeTheSameTokenRenumberPositions()
+	{
+		TokenStore store = new TokenStore();
+		List<Long> expected = new ArrayList<>();
+		add(store, expected, 0, null);
+		add(store, expected, 1, null);
+
+		// every insert halves the gap before the last token, so it is used up after 16 inserts
+		for (long identifier = 2; identifier < 100; identifier++)
+		{
+			store.add(createTokenizable(identifier), createToken(identifier), 1L);
+			expected.add(expected.size() - 1, identifier);
+			assertIdentifiers(expected, store);
+		}
+	}
+
+	@Test
+	public void randomChangesMatchList()
+	{
+		Random random = new Random(20);
+		TokenStore store = new TokenStore();
+		List<Long> expected = new ArrayList<>();
+		long nextIdentifier = 0;
+
+		for (int i = 0; i < 5000; i++)
+		{
+			int operation = random.nextInt(5);
+			if (expected.size() < 2 || operation == 0)
+			{
+				Long before = expected.isEmpty() || random.nextInt(4) == 0 ? null : expected.get(random.nextInt(expected.size()));
+				add(store, expected, nextIdentifier++, before);
+			}
+			else if (operation == 1)
+			{
+				Long identifier = expected.remove(random.nextInt(expected.size()));
+				assertEquals(identifier.longValue(), store.remove(identifier).getIdentifier());
+			}
+			else if (operation == 2)
+			{
+				long source = expected.get(random.nextInt(expected.size()));
+				long target = expected.get(random.nextInt(expected.size()));
+				DropTargetType type = random.nextBoolean() ? DropTargetType.BEFORE : DropTargetType.AFTER;
+				store.move(source, target, type);
+				if (source != target)
+				{
+					expected.remove(source);
+					expected.add(expected.indexOf(target) + (type == DropTargetType.BEFORE ? 0 : 1), source);
+				}
+			}
+			else
+			{
+				long identifier = expected.get(random.nextInt(expected.size()));
+				Long before = random.nextInt(4) == 0 ? null : expected.get(random.nextInt(expected.size()));
+				if (before == null || before != identifier)
+				{
+					store.moveBefore(identifier, before);
+					expected.remove(identifier);
+					expected.add(before != null ? expected.indexOf(before) : expected.size(), identifier);
+				}
+			}
+
+			if (i % 50 == 0)
+			{
+				assertIdentifiers(expected, store);
+			}
+		}
+		assertIdentifiers(expected, store);
+	}
+
+	@Test
+	public void snapshotIsNotChangedByRenumbering()
+	{
+		TokenStore store = new TokenStore();
+		List<Long> expected = new ArrayList<>();
+		add(store, expected, 0, null);
+		add(store, expected, 1, null);
+		List<Tokenizable> snapshot = store.getTokenizables();
+
+		for (long identifier = 2; identifier < 40; identifier++)
+		{
+			store.add(createTokenizable(identifier), createToken(identifier), 1L);
+		}
+
+		assertEquals(2, snapshot.size());
+		assertEquals(0, snapshot.get(0).getIdentifier());
+		assertEquals(1, snapshot.get(1).getIdentifier());
+	}
+
+	@Test
+	public void nextIdentifierFollowsTheOrder()
+	{
+		TokenStore store = new TokenStore();
+		List<Long> expected = new ArrayList<>();
+		add(store, expected, 0, null);
+		add(store, expected, 1, null);
+		add(store, expected, 2, 1L);
+
+		assertEquals(Long.valueOf(2), store.getNextIdentifier(0));
+		assertEquals(Long.valueOf(1), store.getNextIdentifier(2));
+		assertNull(store.getNextIdentifier(1));
+	}
+
+	private static void add(TokenStore store, List<Long> expected, long identifier, Long beforeIdentifier)
+	{
+		store.add(createTokenizable(identifier), createToken(identifier), beforeIdentifier);
+		expected.add(beforeIdentifier != null ? expected.indexOf(beforeIdentifier) : expected.size(), identifier);
+	}
+
+	private static void assertIdentifiers(List<Long> expected, TokenStore store)
+	{
+		List<Long> tokenizables = new ArrayList<>();
+		for (Tokenizable tokenizable : store.getTokenizables())
+		{
+			tokenizables.add(tokenizable.getIdentifier());
+		}
+		List<Long> tokens = new ArrayList<>();
+		for (Token token : store.getTokens())
+		{
+			tokens.add(token.id);
+		}
+
+		assertEquals(expected, tokenizables);
+		assertEquals(expected, tokens);
+		assertEquals(expected.size(), store.size());
+	}
+
+	private static SimpleTokenizable createTokenizable(long identifier)
+	{
+		return new SimpleTokenizable(identifier, "token " + identifier);
+	}
+
+	private static Token createToken(long identifier)
+	{
+		Token token = new Token();
+		token.id = identifier;
+		token.value = "token " + identifier;
+		return token;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.shared;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+
+public class TokenColumnsTest
+{
+
+	@Test
+	public void distinctValuesRoundTrip()
+	{
+		List<Token> tokens = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+		{
+			tokens.add(createToken(i * 7919L, "token " + i));
+		}
+
+		JsonArray columns = TokenColumns.encode(tokens);
+
+		assertEquals(2, columns.length());
+		assertTokens(tokens, decode(columns));
+	}
+
+	@Test
+	public void repeatedValuesRoundTripThroughTheDictionary()
+	{
+		List<Token> tokens = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+		{
+			tokens.add(createToken(i, "value " + i % 3));
+		}
+
+		JsonArray columns = TokenColumns.encode(tokens);
+
+		assertEquals(3, columns.length());
+		assertEquals(3, columns.getArray(1).length());
+		assertTokens(tokens, decode(columns));
+	}
+
+	@Test
+	public void randomTokensRoundTrip()
+	{
+		Random random = new Random(50);
+		for (int round = 0; round < 100; round++)
+		{
+			List<Token> tokens = new ArrayList<>();
+			int distinctValues = 1 + random.nextInt(50);
+			for (int i = random.nextInt(100); i > 0; i--)
+			{
+				// ids up to 2^53 are exact in JSON numbers
+				long id = random.nextLong() >> 11;
+				tokens.add(createToken(id, "välue \"" + random.nextInt(distinctValues) + "\""));
+			}
+
+			assertTokens(tokens, decode(TokenColumns.encode(tokens)));
+		}
+	}
+
+	@Test
+	public void missingValuesAreEmpty()
+	{
+		List<Token> tokens = new ArrayList<>();
+		tokens.add(createToken(1, null));
+
+		TokenColumns columns = decode(TokenColumns.encode(tokens));
+
+		assertEquals("", columns.getValue(0));
+	}
+
+	/**
+	 * @return the columns read from their JSON text, as they are passed to the client
+	 */
+	private static TokenColumns decode(JsonArray columns)
+	{
+		return new TokenColumns(Json.instance().parse(columns.toJson()));
+	}
+
+	private static void assertTokens(List<Token> expected, TokenColumns columns)
+	{
+		assertEquals(expected.size(), columns.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			Token token = columns.toToken(i);
+			assertEquals(expected.get(i).id, token.id);
+			assertEquals(expected.get(i).value, token.value);
+			assertEquals(expected.get(i).id, columns.getId(i));
+		}
+	}
+
+	private static Token createToken(long id, String value)
+	{
+		Token token = new Token();
+		token.id = id;
+		token.value = value;
+		return token;
+	}
+}
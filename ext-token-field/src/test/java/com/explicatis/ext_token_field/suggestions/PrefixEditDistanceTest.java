@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PrefixEditDistanceTest
+{
+
+	@Test
+	public void distanceIsLimitedToTheBand()
+	{
+		PrefixEditDistance distance = new PrefixEditDistance("kitten");
+
+		assertEquals(0, distance.distance("kittens", 0, 2));
+		assertEquals(1, distance.distance("sitten", 0, 2));
+		assertEquals(2, distance.distance("sittin", 0, 2));
+		assertEquals(3, distance.distance("sotting", 0, 2));
+		assertEquals(1, distance.distance("mitten", 0, 0));
+		assertEquals(0, distance.distance("the kitten", 4, 1));
+	}
+
+	@Test
+	public void shortQueriesMatchDynamicProgram()
+	{
+		assertRandomDistances(new Random(60), 20, "abc");
+	}
+
+	@Test
+	public void longQueriesMatchDynamicProgram()
+	{
+		// beyond 64 chars the distance is not computed by bits
+		assertRandomDistances(new Random(61), 90, "ab");
+	}
+
+	@Test
+	public void nonAsciiCharsMatchDynamicProgram()
+	{
+		assertRandomDistances(new Random(62), 20, "aäöß€");
+	}
+
+	private static void assertRandomDistances(Random random, int maxQueryLength, String alphabet)
+	{
+		for (int i = 0; i < 2000; i++)
+		{
+			String query = createString(random, 1 + random.nextInt(maxQueryLength), alphabet);
+			String text = createString(random, random.nextInt(maxQueryLength + 10), alphabet);
+			int start = text.isEmpty() ? 0 : random.nextInt(text.length());
+			int maxDistance = random.nextInt(4);
+
+			int expected = Math.min(getDistance(query, text.substring(start)), maxDistance + 1);
+			assertEquals(query + " / " + text.substring(start), expected, new PrefixEditDistance(query).distance(text, start, maxDistance));
+		}
+	}
+
+	/**
+	 * @return the smallest edit distance of the query to any prefix of the text by the full table
+	 */
+	private static int getDistance(String query, String text)
+	{
+		int[][] table = new int[query.length() + 1][text.length() + 1];
+		for (int i = 0; i <= query.length(); i++)
+		{
+			table[i][0] = i;
+		}
+		for (int j = 0; j <= text.length(); j++)
+		{
+			table[0][j] = j;
+		}
+		for (int i = 1; i <= query.length(); i++)
+		{
+			for (int j = 1; j <= text.length(); j++)
+			{
+				int substitution = table[i - 1][j - 1] + (query.charAt(i - 1) == text.charAt(j - 1) ? 0 : 1);
+				table[i][j] = Math.min(substitution, Math.min(table[i - 1][j], table[i][j - 1]) + 1);
+			}
+		}
+
+		int result = Integer.MAX_VALUE;
+		for (int j = 0; j <= text.length(); j++)
+		{
+			result = Math.min(result, table[query.length()][j]);
+		}
+		return result;
+	}
+
+	private static String createString(Random random, int length, String alphabet)
+	{
+		StringBuilder result = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+		{
+			result.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Explicatis GmbH <ext-token-field@explicatis.com>
+ * 
+ * Author: Florian Schmitt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.explicatis.ext_token_field.suggestions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.explicatis.ext_token_field.SimpleTokenizable;
+
+public class TrigramSuggestionIndexTest
+{
+
+	@Test
+	public void typosWithinTheEditsAreFound()
+	{
+		TrigramSuggestionIndex<SimpleTokenizable> index = new TrigramSuggestionIndex<>(Arrays.asList(new SimpleTokenizable(1, "Apple"), new SimpleTokenizable(2, "Banana"), new SimpleTokenizable(3, "Green Apple")));
+
+		assertEquals(Arrays.asList(1L, 3L), getIdentifiers(index.suggest("aple", 10, identifier -> false)));
+		assertEquals(Arrays.asList(2L), getIdentifiers(index.suggest("bananna", 10, identifier -> false)));
+		assertEquals(Arrays.asList(3L), getIdentifiers(index.suggest("aple", 10, identifier -> identifier == 1)));
+	}
+
+	@Test
+	public void shortFilterFindsValuesSharingNoTrigram()
+	{
+		// the values sharing a trigram with the filter use up the candidates, the match sharing none is added last
+		List<SimpleTokenizable> catalog = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+		{
+			catalog.add(new SimpleTokenizable(i, "xzz " + i));
+		}
+		catalog.add(new SimpleTokenizable(1000, "abc"));
+		TrigramSuggestionIndex<SimpleTokenizable> index = new TrigramSuggestionIndex<>(catalog);
+		index.setMaxCandidates(10);
+
+		assertEquals(Arrays.asList(1000L), getIdentifiers(index.suggest("xbc", 10, identifier -> false)));
+	}
+
+	private static List<Long> getIdentifiers(List<SimpleTokenizable> tokenizables)
+	{
+		List<Long> result = new ArrayList<>();
+		for (SimpleTokenizable tokenizable : tokenizables)
+		{
+			result.add(tokenizable.getIdentifier());
+		}
+		return result;
+	}
+}